@@ -229,6 +229,9 @@ dependencies {
     // Debug工具
     debugImplementation(libs.androidx.compose.ui.tooling)
 
+    // 测试
+    testImplementation(libs.junit)
+
     // Cling DLNA/UPnP 依赖已在下方统一配置
 
     // QuickJS依赖 - 按照原项目FongMi_TV配置
@@ -265,6 +265,46 @@ public class Setting {
         Prefers.put("speed", speed);
     }
 
+    public static boolean isRace() {
+        return Prefers.getBoolean("race", true);
+    }
+
+    public static void putRace(boolean race) {
+        Prefers.put("race", race);
+    }
+
+    public static float getPreload() {
+        return Math.min(Math.max(Prefers.getFloat("preload", 0.8f), 0.5f), 0.95f);
+    }
+
+    public static void putPreload(float preload) {
+        Prefers.put("preload", preload);
+    }
+
+    public static int getPlayTtl() {
+        return Prefers.getInt("play_ttl", 10);
+    }
+
+    public static void putPlayTtl(int ttl) {
+        Prefers.put("play_ttl", ttl);
+    }
+
+    public static int getDownloadQuota() {
+        return Prefers.getInt("download_quota", 4096);
+    }
+
+    public static void putDownloadQuota(int quota) {
+        Prefers.put("download_quota", quota);
+    }
+
+    public static int getThunderQuota() {
+        return Prefers.getInt("thunder_quota", 1024);
+    }
+
+    public static void putThunderQuota(int quota) {
+        Prefers.put("thunder_quota", quota);
+    }
+
     public static float getSubtitleTextSize() {
         return Prefers.getFloat("subtitle_text_size");
     }
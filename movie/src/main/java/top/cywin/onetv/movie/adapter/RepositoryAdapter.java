@@ -191,6 +191,13 @@ public class RepositoryAdapter {
         }
     }
 
+    /**
+     * 预解析下一集播放地址
+     */
+    public void preloadPlayUrl(String key, String url, String flag, long position, long duration) {
+        SiteViewModel.get().preload(key, url, flag, position, duration);
+    }
+
     /**
      * 切换播放线路
      */
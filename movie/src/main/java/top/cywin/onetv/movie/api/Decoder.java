@@ -3,7 +3,9 @@ package top.cywin.onetv.movie.api;
 import android.util.Base64;
 
 import top.cywin.onetv.movie.utils.UrlUtil;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkStream;
 import top.cywin.onetv.movie.catvod.utils.Json;
 import top.cywin.onetv.movie.catvod.utils.Util;
 
@@ -16,18 +18,18 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import okhttp3.HttpUrl;
-import okhttp3.Response;
 
 public class Decoder {
 
+    private static final long LIMIT = 32 * 1024 * 1024;
     private static final Pattern JS_URI = Pattern.compile("\"(\\.|\\.\\.)/(.?|.+?)\\.js\\?(.?|.+?)\"");
 
     public static String getJson(String url, String tag) throws Exception {
-        try (Response res = OkHttp.newCall(url, tag).execute()) {
-            HttpUrl httpUrl = res.request().url();
+        try (OkStream stream = OkHttp.stream(OkHttp.newCall(OkHttp.client(OkCache.Type.CONFIG), url, tag), LIMIT)) {
+            HttpUrl httpUrl = stream.response().request().url();
             int size = HttpUrl.parse(url).querySize();
             if (httpUrl.querySize() == size) url = httpUrl.toString();
-            return verify(url, res.body().string());
+            return verify(url, stream.string());
         }
     }
 
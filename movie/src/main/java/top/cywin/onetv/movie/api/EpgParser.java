@@ -10,6 +10,7 @@ import top.cywin.onetv.movie.bean.Live;
 import top.cywin.onetv.movie.bean.Tv;
 import top.cywin.onetv.movie.utils.Download;
 import top.cywin.onetv.movie.utils.FileUtil;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.utils.Path;
 import top.cywin.onetv.movie.catvod.utils.Trans;
 
@@ -34,7 +35,7 @@ public class EpgParser {
 
     public static boolean start(Live live, String url) throws Exception {
         File file = Path.epg(Uri.parse(url).getLastPathSegment());
-        if (shouldDownload(file)) Download.create(url, file).start();
+        if (shouldDownload(file)) Download.create(url, file).cache(OkCache.Type.EPG).start();
         if (file.getName().endsWith(".gz")) readGzip(live, file);
         else readXml(live, file);
         return true;
@@ -62,7 +63,7 @@ public class EpgParser {
         Map<String, String> srcMap = new HashMap<>();
         Map<String, Tv.Channel> mapping = new HashMap<>();
         String today = formatDate.format(new Date());
-        Tv tv = new Persister().read(Tv.class, Path.read(file), false);
+        Tv tv = new Persister().read(Tv.class, file, false);
         for (Group group : live.getGroups()) for (Channel channel : group.getChannel()) exist.add(channel.getTvgId());
         for (Tv.Channel channel : tv.getChannel()) mapping.put(channel.getId(), channel);
         for (Tv.Programme programme : tv.getProgramme()) {
@@ -10,16 +10,24 @@ import top.cywin.onetv.movie.bean.Group;
 import top.cywin.onetv.movie.bean.Live;
 import top.cywin.onetv.movie.utils.UrlUtil;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkStream;
 import top.cywin.onetv.movie.catvod.utils.Json;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import okio.BufferedSource;
+
 public class LiveParser {
 
+    private static final long LIMIT = 64 * 1024 * 1024;
+    private static final int SNIFF = 1024;
+
     private static final Pattern M3U = Pattern.compile("^(?!.*#genre#).*#EXT(?:M3U|INF).*", Pattern.MULTILINE);
     private static final Pattern CATCHUP_REPLACE = Pattern.compile(".*catchup-replace=\"(.?|.+?)\".*");
     private static final Pattern CATCHUP_SOURCE = Pattern.compile(".*catchup-source=\"(.?|.+?)\".*");
@@ -47,14 +55,34 @@ public class LiveParser {
 
     public static void start(Live live) throws Exception {
         if (!live.getGroups().isEmpty()) return;
-        String text = getText(live);
+        if (live.getApi().isEmpty()) stream(live);
+        else parse(live, live.spider().liveContent(live.getUrl()));
+    }
+
+    private static void parse(Live live, String text) {
         if (Json.isArray(text)) json(live, text);
         else text(live, text);
     }
 
-    private static String getText(Live live) throws Exception {
-        if (!live.getApi().isEmpty()) return live.spider().liveContent(live.getUrl());
-        return OkHttp.string(UrlUtil.convert(live.getUrl()), live.getHeaders());
+    private static void stream(Live live) {
+        String url = UrlUtil.convert(live.getUrl());
+        if (!url.startsWith("http")) return;
+        try (OkStream stream = OkHttp.stream(url, live.getHeaders(), LIMIT)) {
+            if (isArray(stream.source())) json(live, stream);
+            else text(live, stream.string());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isArray(BufferedSource source) throws IOException {
+        BufferedSource peek = source.peek();
+        for (int i = 0; i < SNIFF && peek.request(1); i++) {
+            byte b = peek.readByte();
+            if (b == '[') return true;
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && (b & 0x80) == 0) return false;
+        }
+        return false;
     }
 
     public static void text(Live live, String text) {
@@ -69,9 +97,21 @@ public class LiveParser {
         }
     }
 
+    private static void json(Live live, OkStream stream) {
+        try {
+            setGroups(live, Group.arrayFrom(stream.json()));
+        } catch (Exception e) {
+            live.getGroups().clear();
+        }
+    }
+
     private static void json(Live live, String text) {
+        setGroups(live, Group.arrayFrom(text));
+    }
+
+    private static void setGroups(Live live, List<Group> groups) {
         int number = 0;
-        live.getGroups().addAll(Group.arrayFrom(text));
+        live.getGroups().addAll(groups);
         for (Group group : live.getGroups()) {
             for (Channel channel : group.getChannel()) {
                 if (channel.getNumber().isEmpty()) channel.setNumber(++number);
@@ -24,7 +24,9 @@ import org.greenrobot.eventbus.EventBus;
 import top.cywin.onetv.movie.event.NavigationEvent;
 import top.cywin.onetv.movie.utils.Notify;
 import top.cywin.onetv.movie.utils.UrlUtil;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPrewarm;
 import top.cywin.onetv.movie.catvod.utils.Json;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -178,6 +180,7 @@ public class LiveConfig {
         } finally {
             if (callback != null) App.post(callback::success);
         }
+        App.execute(this::prewarm);
     }
 
     private void initLive(JsonObject object) {
@@ -202,11 +205,28 @@ public class LiveConfig {
         if (home == null) setHome(lives.isEmpty() ? new Live() : lives.get(0), true);
         setRules(Rule.arrayFrom(object.getAsJsonArray("rules")));
         setHeaders(Json.safeListElement(object, "headers"));
+        setCache(Json.safeListElement(object, "cache"));
         setHosts(Json.safeListString(object, "hosts"));
         setProxy(Json.safeListString(object, "proxy"));
         setAds(Json.safeListString(object, "ads"));
     }
 
+    private void prewarm() {
+        try {
+            List<String> urls = new ArrayList<>();
+            urls.add(getHome().getUrl());
+            urls.add(getHome().getApi());
+            for (Live live : getLives()) {
+                urls.add(live.getUrl());
+                urls.add(live.getApi());
+                urls.add(live.getJar());
+            }
+            OkPrewarm.get().warm(urls);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
     private String parseJar(Live live, String spider) {
         return live.getJar().isEmpty() ? spider : live.getJar();
     }
@@ -278,6 +298,10 @@ public class LiveConfig {
         OkHttp.responseInterceptor().setHeaders(items);
     }
 
+    public void setCache(List<JsonElement> items) {
+        OkCache.get().setRules("live", items);
+    }
+
     public void setHosts(List<String> hosts) {
         OkHttp.dns().addAll(hosts);
     }
@@ -8,6 +8,7 @@ import top.cywin.onetv.movie.api.Decoder;
 import top.cywin.onetv.movie.api.loader.BaseLoader;
 import top.cywin.onetv.movie.bean.Config;
 import top.cywin.onetv.movie.bean.Depot;
+import top.cywin.onetv.movie.bean.History;
 import top.cywin.onetv.movie.bean.Parse;
 import top.cywin.onetv.movie.bean.Rule;
 import top.cywin.onetv.movie.bean.Site;
@@ -15,7 +16,9 @@ import top.cywin.onetv.movie.impl.Callback;
 import top.cywin.onetv.movie.utils.Notify;
 import top.cywin.onetv.movie.utils.UrlUtil;
 import top.cywin.onetv.movie.catvod.bean.Doh;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPrewarm;
 import top.cywin.onetv.movie.catvod.utils.Json;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -158,7 +161,9 @@ public class VodConfig {
         } catch (Throwable e) {
             e.printStackTrace();
             App.post(() -> callback.error(Notify.getError(R.string.vod_error_config_parse, e)));
+            return;
         }
+        App.execute(this::prewarm);
     }
 
     private void initSite(JsonObject object) {
@@ -204,6 +209,7 @@ public class VodConfig {
         setRules(Rule.arrayFrom(object.getAsJsonArray("rules")));
         setDoh(Doh.arrayFrom(object.getAsJsonArray("doh")));
         setHeaders(Json.safeListElement(object, "headers"));
+        setCache(Json.safeListElement(object, "cache"));
         setFlags(Json.safeListString(object, "flags"));
         setHosts(Json.safeListString(object, "hosts"));
         setProxy(Json.safeListString(object, "proxy"));
@@ -211,6 +217,25 @@ public class VodConfig {
         setAds(Json.safeListString(object, "ads"));
     }
 
+    private void prewarm() {
+        try {
+            List<String> urls = new ArrayList<>();
+            for (History item : History.get()) {
+                urls.add(getSite(item.getSiteKey()).getApi());
+                urls.add(item.getEpisodeUrl());
+            }
+            urls.add(getHome().getApi());
+            for (Site site : getSites()) {
+                urls.add(site.getApi());
+                urls.add(site.getJar());
+            }
+            for (Parse item : getParses()) urls.add(item.getUrl());
+            OkPrewarm.get().warm(urls);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
     private String parseJar(Site site, String spider) {
         return site.getJar().isEmpty() ? spider : site.getJar();
     }
@@ -260,6 +285,10 @@ public class VodConfig {
         OkHttp.responseInterceptor().setHeaders(items);
     }
 
+    public void setCache(List<JsonElement> items) {
+        OkCache.get().setRules("vod", items);
+    }
+
     public List<String> getFlags() {
         return flags == null ? Collections.emptyList() : flags;
     }
@@ -6,6 +6,7 @@ import top.cywin.onetv.movie.App;
 import top.cywin.onetv.movie.utils.UrlUtil;
 import top.cywin.onetv.movie.catvod.crawler.Spider;
 import top.cywin.onetv.movie.catvod.crawler.SpiderNull;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 import top.cywin.onetv.movie.catvod.utils.Path;
 import top.cywin.onetv.movie.catvod.utils.Util;
@@ -78,7 +79,7 @@ public class JarLoader {
 
     private File download(String url) {
         try {
-            return Path.write(Path.jar(url), OkHttp.bytes(url));
+            return Path.write(Path.jar(url), OkHttp.bytes(OkHttp.client(OkCache.Type.SPIDER), url));
         } catch (Exception e) {
             return Path.jar(url);
         }
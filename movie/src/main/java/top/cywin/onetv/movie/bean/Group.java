@@ -9,6 +9,7 @@ import top.cywin.onetv.movie.R;
 import top.cywin.onetv.movie.utils.ResUtil;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -34,6 +35,12 @@ public class Group {
         return items == null ? Collections.emptyList() : items;
     }
 
+    public static List<Group> arrayFrom(JsonReader reader) {
+        Type listType = new TypeToken<List<Group>>() {}.getType();
+        List<Group> items = App.gson().fromJson(reader, listType);
+        return items == null ? Collections.emptyList() : items;
+    }
+
     public static Group create() {
         return create(R.string.vod_setting_live);
     }
@@ -222,6 +222,10 @@ public class Result implements Parcelable {
         return TextUtils.isEmpty(jxFrom) ? "" : jxFrom;
     }
 
+    public void setJxFrom(String jxFrom) {
+        this.jxFrom = jxFrom;
+    }
+
     public String getFlag() {
         return TextUtils.isEmpty(flag) ? "" : flag;
     }
@@ -0,0 +1,120 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Path;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+
+public class OkCache {
+
+    private static final long MB = 1024 * 1024;
+    private static final long MINUTE = TimeUnit.MINUTES.toSeconds(1);
+    private static final long HOUR = TimeUnit.HOURS.toSeconds(1);
+    private static final long DAY = TimeUnit.DAYS.toSeconds(1);
+
+    public enum Type {
+        CONFIG("config", 8 * MB, 0, false, OkPriority.Level.INTERACTIVE),
+        SPIDER("spider", 64 * MB, 10 * MINUTE, true, OkPriority.Level.INTERACTIVE),
+        SCRIPT("script", 32 * MB, 10 * MINUTE, true, OkPriority.Level.INTERACTIVE),
+        IMAGE("image", 128 * MB, 7 * DAY, false, OkPriority.Level.PREFETCH),
+        EPG("epg", 32 * MB, 6 * HOUR, false, OkPriority.Level.BACKGROUND),
+        API("api", 32 * MB, 0, false, OkPriority.Level.INTERACTIVE);
+
+        private final String dir;
+        private final long size;
+        private final long ttl;
+        private final boolean revalidate;
+        private final OkPriority.Level level;
+
+        Type(String dir, long size, long ttl, boolean revalidate, OkPriority.Level level) {
+            this.dir = dir;
+            this.size = size;
+            this.ttl = ttl;
+            this.revalidate = revalidate;
+            this.level = level;
+        }
+
+        public OkPriority.Level getLevel() {
+            return level;
+        }
+    }
+
+    private final Map<Type, Cache> caches;
+    private final Map<String, Map<String, Long>> owners;
+    private volatile Map<String, Long> rules;
+
+    private static class Loader {
+        static volatile OkCache INSTANCE = new OkCache();
+    }
+
+    public static OkCache get() {
+        return Loader.INSTANCE;
+    }
+
+    private OkCache() {
+        caches = new EnumMap<>(Type.class);
+        owners = new HashMap<>();
+        rules = new HashMap<>();
+    }
+
+    public synchronized Cache cache(Type type) {
+        Cache cache = caches.get(type);
+        if (cache != null) return cache;
+        caches.put(type, cache = new Cache(new File(Path.cache("okhttp"), type.dir), type.size));
+        return cache;
+    }
+
+    public synchronized void setRules(String owner, List<JsonElement> items) {
+        Map<String, Long> map = new HashMap<>();
+        for (JsonElement item : items) {
+            JsonObject object = Json.safeObject(item);
+            if (object.has("host") && object.has("ttl")) map.put(object.get("host").getAsString(), object.get("ttl").getAsLong());
+        }
+        owners.put(owner, map);
+        merge();
+    }
+
+    private void merge() {
+        Map<String, Long> merged = new HashMap<>();
+        for (Map<String, Long> map : owners.values()) merged.putAll(map);
+        rules = merged;
+    }
+
+    /**
+     * Cache-Control for a response that came without one: a host rule wins, then the type default.
+     * Spiders and scripts are revalidated on every use when they carry a validator, so an update
+     * shows up at once, and only fall back to the short default without one.
+     */
+    public String cacheControl(Type type, String host, boolean validator) {
+        Map<String, Long> rules = this.rules;
+        Long ttl = rules.get(host);
+        for (int i = host.indexOf('.'); ttl == null && i != -1; i = host.indexOf('.', i + 1)) ttl = rules.get(host.substring(i + 1));
+        if (ttl == null && type.revalidate && validator) return "no-cache";
+        if (ttl == null) ttl = type.ttl;
+        return ttl <= 0 ? null : "public, max-age=" + ttl;
+    }
+
+    public synchronized void clear() {
+        owners.clear();
+        merge();
+    }
+
+    public synchronized void evictAll() {
+        for (Cache cache : caches.values()) {
+            try {
+                cache.evictAll();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
@@ -8,9 +8,9 @@ import androidx.annotation.NonNull;
 
 import com.google.common.net.HttpHeaders;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
 
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
@@ -19,6 +19,7 @@ import okhttp3.Request;
 
 public class OkCookieJar implements CookieJar {
 
+    private final OkCookieStore store;
     private CookieManager manager;
 
     private static class Loader {
@@ -34,6 +35,7 @@ public class OkCookieJar implements CookieJar {
             manager = CookieManager.getInstance();
         } catch (Throwable ignored) {
         }
+        store = new OkCookieStore(new WebViewBackend(), Executors.newSingleThreadScheduledExecutor());
     }
 
     public static void setAcceptThirdPartyCookies(WebView view) {
@@ -44,44 +46,50 @@ public class OkCookieJar implements CookieJar {
     }
 
     public static void sync(HttpUrl url, Request request) {
-        if (!"127.0.0.1".equals(url.host())) sync(url.toString(), request.header(HttpHeaders.COOKIE));
+        String cookie = request.header(HttpHeaders.COOKIE);
+        if (!"127.0.0.1".equals(url.host()) && !TextUtils.isEmpty(cookie)) get().store.save(url, cookie);
     }
 
     public static void sync(String url, String cookie) {
-        try {
-            if (TextUtils.isEmpty(cookie)) return;
-            for (String split : cookie.split(";")) get().manager.setCookie(url, split);
-            get().manager.flush();
-        } catch (Throwable ignored) {
-        }
-    }
-
-    private void add(List<Cookie> items, Cookie cookie) {
-        if (cookie != null) items.add(cookie);
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl != null && !TextUtils.isEmpty(cookie)) get().store.save(httpUrl, cookie);
     }
 
     @NonNull
     @Override
-    public synchronized List<Cookie> loadForRequest(@NonNull HttpUrl url) {
+    public List<Cookie> loadForRequest(@NonNull HttpUrl url) {
         try {
-            List<Cookie> items = new ArrayList<>();
-            String cookie = manager.getCookie(url.toString());
-            if (TextUtils.isEmpty(cookie)) return Collections.emptyList();
             if ("127.0.0.1".equals(url.host())) return Collections.emptyList();
-            for (String split : cookie.split(";")) add(items, Cookie.parse(url, split));
-            return items;
+            return store.load(url);
         } catch (Throwable e) {
             return Collections.emptyList();
         }
     }
 
     @Override
-    public synchronized void saveFromResponse(@NonNull HttpUrl url, @NonNull List<Cookie> cookies) {
+    public void saveFromResponse(@NonNull HttpUrl url, @NonNull List<Cookie> cookies) {
         try {
             if ("127.0.0.1".equals(url.host())) return;
-            for (Cookie cookie : cookies) manager.setCookie(url.toString(), cookie.toString());
-            manager.flush();
+            store.save(url, cookies);
         } catch (Throwable ignored) {
         }
     }
+
+    private class WebViewBackend implements OkCookieStore.Backend {
+
+        @Override
+        public String get(String url) {
+            return manager == null ? null : manager.getCookie(url);
+        }
+
+        @Override
+        public void set(String url, String cookie) {
+            if (manager != null) manager.setCookie(url, cookie);
+        }
+
+        @Override
+        public void flush() {
+            if (manager != null) manager.flush();
+        }
+    }
 }
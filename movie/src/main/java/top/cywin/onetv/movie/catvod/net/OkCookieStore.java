@@ -0,0 +1,198 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+/**
+ * In-memory cookie store indexed by domain. Writes are queued and pushed to the {@link Backend}
+ * in batches on the given executor, and hosts are pulled from the backend on first use and again
+ * in the background once their copy is older than {@link #REFRESH}. A pull also drops cookies for
+ * the url that the backend no longer has, unless a write for them is still queued.
+ * Has no Android dependency so it can be driven by a fake backend on the JVM.
+ */
+public class OkCookieStore {
+
+    private static final long DELAY = 500;
+    private static final long REFRESH = TimeUnit.SECONDS.toMillis(30);
+
+    private final Map<String, Map<String, Cookie>> domains;
+    private final Map<String, Long> pulled;
+    private final Queue<String[]> pending;
+    private final AtomicBoolean scheduled;
+    private final ScheduledExecutorService executor;
+    private final Backend backend;
+
+    public interface Backend {
+
+        String get(String url);
+
+        void set(String url, String cookie);
+
+        void flush();
+    }
+
+    public OkCookieStore(Backend backend, ScheduledExecutorService executor) {
+        this.domains = new ConcurrentHashMap<>();
+        this.pulled = new ConcurrentHashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.executor = executor;
+        this.backend = backend;
+    }
+
+    public List<Cookie> load(HttpUrl url) {
+        Long time = pulled.get(url.host());
+        if (time == null) pull(url);
+        else if (System.currentTimeMillis() - time > REFRESH) refresh(url);
+        List<Cookie> items = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        String domain = url.host();
+        while (true) {
+            Map<String, Cookie> cookies = domains.get(domain);
+            if (cookies != null) collect(items, cookies, url, now);
+            int dot = domain.indexOf('.');
+            if (dot == -1) break;
+            domain = domain.substring(dot + 1);
+        }
+        return items;
+    }
+
+    public void save(HttpUrl url, List<Cookie> cookies) {
+        for (Cookie cookie : cookies) {
+            put(cookie);
+            pending.add(new String[]{url.toString(), cookie.toString()});
+        }
+        schedule();
+    }
+
+    public void save(HttpUrl url, String header) {
+        for (String split : header.split(";")) {
+            Cookie cookie = Cookie.parse(url, split.trim());
+            if (cookie != null) put(cookie);
+            pending.add(new String[]{url.toString(), split});
+        }
+        schedule();
+    }
+
+    public void clear() {
+        pending.clear();
+        domains.clear();
+        pulled.clear();
+    }
+
+    private void collect(List<Cookie> items, Map<String, Cookie> cookies, HttpUrl url, long now) {
+        for (Map.Entry<String, Cookie> entry : cookies.entrySet()) {
+            Cookie cookie = entry.getValue();
+            if (cookie.expiresAt() <= now) cookies.remove(entry.getKey(), cookie);
+            else if (cookie.matches(url)) items.add(cookie);
+        }
+    }
+
+    private void put(Cookie cookie) {
+        String key = cookie.name() + ";" + cookie.path();
+        Map<String, Cookie> cookies = domains.computeIfAbsent(cookie.domain(), k -> new ConcurrentHashMap<>());
+        if (cookie.expiresAt() <= System.currentTimeMillis()) cookies.remove(key);
+        else cookies.put(key, cookie);
+    }
+
+    private void pull(HttpUrl url) {
+        pulled.put(url.host(), System.currentTimeMillis());
+        try {
+            String header = backend.get(url.toString());
+            Set<String> names = new HashSet<>();
+            if (header != null && !header.isEmpty()) {
+                for (String split : header.split(";")) {
+                    Cookie cookie = Cookie.parse(url, split.trim());
+                    if (cookie == null) continue;
+                    names.add(cookie.name());
+                    merge(url, cookie);
+                }
+            }
+            prune(url, names);
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private void prune(HttpUrl url, Set<String> names) {
+        for (String[] item : pending) names.add(name(item[1]));
+        String domain = url.host();
+        while (true) {
+            Map<String, Cookie> cookies = domains.get(domain);
+            if (cookies != null) for (Map.Entry<String, Cookie> entry : cookies.entrySet()) if (entry.getValue().matches(url) && !names.contains(entry.getValue().name())) cookies.remove(entry.getKey(), entry.getValue());
+            int dot = domain.indexOf('.');
+            if (dot == -1) break;
+            domain = domain.substring(dot + 1);
+        }
+    }
+
+    private static String name(String cookie) {
+        int index = cookie.indexOf('=');
+        return (index == -1 ? cookie : cookie.substring(0, index)).trim();
+    }
+
+    private void merge(HttpUrl url, Cookie cookie) {
+        for (Cookie item : find(url, cookie.name())) {
+            if (item.value().equals(cookie.value())) return;
+            put(copy(item, cookie.value()));
+            return;
+        }
+        put(cookie);
+    }
+
+    private List<Cookie> find(HttpUrl url, String name) {
+        List<Cookie> items = new ArrayList<>();
+        String domain = url.host();
+        while (true) {
+            Map<String, Cookie> cookies = domains.get(domain);
+            if (cookies != null) for (Cookie cookie : cookies.values()) if (cookie.name().equals(name) && cookie.matches(url)) items.add(cookie);
+            int dot = domain.indexOf('.');
+            if (dot == -1) break;
+            domain = domain.substring(dot + 1);
+        }
+        return items;
+    }
+
+    private Cookie copy(Cookie cookie, String value) {
+        Cookie.Builder builder = new Cookie.Builder().name(cookie.name()).value(value).path(cookie.path()).expiresAt(cookie.expiresAt());
+        if (cookie.hostOnly()) builder.hostOnlyDomain(cookie.domain());
+        else builder.domain(cookie.domain());
+        if (cookie.secure()) builder.secure();
+        if (cookie.httpOnly()) builder.httpOnly();
+        return builder.build();
+    }
+
+    private void refresh(HttpUrl url) {
+        pulled.put(url.host(), System.currentTimeMillis());
+        executor.execute(() -> {
+            flush();
+            pull(url);
+        });
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) executor.schedule(this::flush, DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        if (pending.isEmpty()) return;
+        try {
+            String[] item;
+            while ((item = pending.poll()) != null) backend.set(item[0], item[1]);
+            backend.flush();
+        } catch (Throwable ignored) {
+        }
+    }
+}
@@ -1,33 +1,86 @@
 package top.cywin.onetv.movie.catvod.net;
 
-import androidx.annotation.NonNull;
+import android.os.SystemClock;
 
-import top.cywin.onetv.movie.catvod.utils.Util;
+import androidx.annotation.NonNull;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import okhttp3.Dns;
 import okhttp3.dnsoverhttps.DnsOverHttps;
 
 public class OkDns implements Dns {
 
-    private final ConcurrentHashMap<String, String> map;
-    private DnsOverHttps doh;
+    private static final long POSITIVE_TTL = TimeUnit.MINUTES.toMillis(5);
+    private static final long NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(10);
+    private static final long STALE_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long RACE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final int MAX_ENTRIES = 256;
+    private static final int THREADS = 8;
+
+    private final Map<String, String> map;
+    private final Map<String, Entry> cache;
+    private final Set<String> refreshing;
+    private final ExecutorService executor;
+    private volatile OkRaceDns race;
+    private volatile OkHosts hosts;
 
     public OkDns() {
-        this.map = new ConcurrentHashMap<>();
+        this.map = new LinkedHashMap<>();
+        this.hosts = new OkHosts();
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+        this.refreshing = ConcurrentHashMap.newKeySet();
+        this.executor = executor();
+        this.race = new OkRaceDns(executor, RACE_TIMEOUT, Dns.SYSTEM);
+    }
+
+    private static ExecutorService executor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "dns");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public void onNetworkChanged() {
+        cache.clear();
     }
 
     public void setDoh(DnsOverHttps doh) {
-        this.doh = doh;
+        this.race = doh == null ? new OkRaceDns(executor, RACE_TIMEOUT, Dns.SYSTEM) : new OkRaceDns(executor, RACE_TIMEOUT, doh, Dns.SYSTEM);
+        cache.clear();
+    }
+
+    public void onConnected(InetAddress address) {
+        race.onConnected(address);
     }
 
-    public void clear() {
+    public void onConnectFailed(InetAddress address) {
+        race.onConnectFailed(address);
+    }
+
+    public synchronized void clear() {
         map.clear();
+        cache.clear();
+        hosts = new OkHosts();
     }
 
     public synchronized void addAll(List<String> hosts) {
@@ -38,12 +91,88 @@ public class OkDns implements Dns {
             String newHost = splits[1];
             map.put(oldHost, newHost);
         }
+        OkHosts compiled = new OkHosts();
+        for (Map.Entry<String, String> entry : map.entrySet()) compiled.add(entry.getKey(), entry.getValue());
+        this.hosts = compiled;
+        this.cache.clear();
+    }
+
+    public String map(String hostname) {
+        String target = hosts.isEmpty() ? null : hosts.find(hostname);
+        return target == null ? hostname : target;
     }
 
     @NonNull
     @Override
     public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
-        for (Map.Entry<String, String> entry : map.entrySet()) if (Util.containOrMatch(hostname, entry.getKey())) hostname = entry.getValue();
-        return (doh != null ? doh : Dns.SYSTEM).lookup(hostname);
+        hostname = map(hostname);
+        Entry entry = cache.get(hostname);
+        long now = SystemClock.elapsedRealtime();
+        if (entry != null && entry.isFresh(now)) return race.sort(entry.get(hostname));
+        if (entry != null && entry.isStale(now)) {
+            refresh(hostname);
+            return race.sort(entry.get(hostname));
+        }
+        return resolve(hostname).get(hostname);
+    }
+
+    private Entry resolve(String hostname) throws UnknownHostException {
+        Entry entry;
+        try {
+            entry = Entry.positive(system(hostname));
+        } catch (UnknownHostException e) {
+            if (OkRaceDns.isTimeout(e)) throw e;
+            entry = Entry.negative();
+        }
+        cache.put(hostname, entry);
+        return entry;
+    }
+
+    private List<InetAddress> system(String hostname) throws UnknownHostException {
+        return race.lookup(hostname);
+    }
+
+    private void refresh(String hostname) {
+        if (!refreshing.add(hostname)) return;
+        executor.execute(() -> {
+            try {
+                cache.put(hostname, Entry.positive(system(hostname)));
+            } catch (UnknownHostException ignored) {
+            } finally {
+                refreshing.remove(hostname);
+            }
+        });
+    }
+
+    private static class Entry {
+
+        private final List<InetAddress> addresses;
+        private final long expire;
+
+        private static Entry positive(List<InetAddress> addresses) {
+            return new Entry(addresses, SystemClock.elapsedRealtime() + POSITIVE_TTL);
+        }
+
+        private static Entry negative() {
+            return new Entry(null, SystemClock.elapsedRealtime() + NEGATIVE_TTL);
+        }
+
+        private Entry(List<InetAddress> addresses, long expire) {
+            this.addresses = addresses;
+            this.expire = expire;
+        }
+
+        private boolean isFresh(long now) {
+            return now < expire;
+        }
+
+        private boolean isStale(long now) {
+            return addresses != null && now < expire + STALE_TTL;
+        }
+
+        private List<InetAddress> get(String hostname) throws UnknownHostException {
+            if (addresses == null) throw new UnknownHostException(hostname);
+            return addresses;
+        }
     }
 }
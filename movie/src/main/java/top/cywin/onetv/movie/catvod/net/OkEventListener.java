@@ -0,0 +1,130 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+public class OkEventListener extends EventListener {
+
+    private long callStart;
+    private long dnsStart = -1;
+    private long dnsEnd = -1;
+    private long connectStart = -1;
+    private long connectEnd = -1;
+    private long secureStart = -1;
+    private long secureEnd = -1;
+    private long requestStart = -1;
+    private long responseStart = -1;
+    private long bodyStart = -1;
+    private long bodyEnd = -1;
+    private OkPriority.Level level;
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        callStart = SystemClock.elapsedRealtime();
+        OkHttp.track(call);
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        OkPriority.get().release(call);
+        OkHttp.untrack(call);
+        record(call, false);
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        OkPriority.get().release(call);
+        OkHttp.untrack(call);
+        record(call, true);
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+        dnsStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+        dnsEnd = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress address, @NonNull Proxy proxy) {
+        connectStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        secureStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
+        secureEnd = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress address, @NonNull Proxy proxy, @Nullable Protocol protocol) {
+        connectEnd = SystemClock.elapsedRealtime();
+        if (address.getAddress() != null) OkHttp.dns().onConnected(address.getAddress());
+    }
+
+    @Override
+    public void connectFailed(@NonNull Call call, @NonNull InetSocketAddress address, @NonNull Proxy proxy, @Nullable Protocol protocol, @NonNull IOException ioe) {
+        if (address.getAddress() != null) OkHttp.dns().onConnectFailed(address.getAddress());
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        requestStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
+        level = request.tag(OkPriority.Level.class);
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        responseStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void responseBodyStart(@NonNull Call call) {
+        bodyStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        bodyEnd = SystemClock.elapsedRealtime();
+    }
+
+    private void record(Call call, boolean failed) {
+        long[] phases = new long[OkMetrics.Phase.values().length];
+        phases[OkMetrics.Phase.DNS.ordinal()] = span(dnsStart, dnsEnd);
+        phases[OkMetrics.Phase.CONNECT.ordinal()] = span(connectStart, connectEnd);
+        phases[OkMetrics.Phase.TLS.ordinal()] = span(secureStart, secureEnd);
+        phases[OkMetrics.Phase.TTFB.ordinal()] = span(requestStart, responseStart);
+        phases[OkMetrics.Phase.BODY.ordinal()] = span(bodyStart, bodyEnd);
+        phases[OkMetrics.Phase.TOTAL.ordinal()] = SystemClock.elapsedRealtime() - callStart;
+        OkMetrics.get().record(call.request().url().host(), level == null ? "default" : level.name().toLowerCase(), phases, failed);
+    }
+
+    private static long span(long start, long end) {
+        return start < 0 || end < start ? -1 : end - start;
+    }
+}
@@ -0,0 +1,100 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of the {@code hosts} config entries ({@code "rule=target"}).
+ * Plain rules are looked up by hostname, by each dot-suffix of it and then by every other run of
+ * whole labels, {@code *.domain} rules only by suffix, and only rules that really contain regex
+ * syntax are compiled into patterns. Lookups cost the number of label runs, not the number of rules.
+ * Plain rules that only match part of a label, as {@code contains} did before, are still honoured by a
+ * scan whose result is remembered per host, so it runs once per host rather than on every miss.
+ */
+public class OkHosts {
+
+    private static final String REGEX = "\\^$|?*+()[]{}";
+    private static final int MEMO = 512;
+
+    private final Map<String, String> exact;
+    private final Map<String, String> suffix;
+    private final Map<Pattern, String> regex;
+    private final Map<String, String> memo;
+    private final List<String> plain;
+
+    public OkHosts() {
+        this.exact = new HashMap<>();
+        this.suffix = new HashMap<>();
+        this.regex = new LinkedHashMap<>();
+        this.plain = new ArrayList<>();
+        this.memo = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MEMO;
+            }
+        });
+    }
+
+    public boolean isEmpty() {
+        return exact.isEmpty() && suffix.isEmpty() && regex.isEmpty();
+    }
+
+    public void add(String rule, String target) {
+        if (rule.startsWith("*.") && !isRegex(rule.substring(2))) {
+            suffix.put(rule.substring(2), target);
+        } else if (isRegex(rule)) {
+            compile(rule, target);
+        } else {
+            if (exact.put(rule, target) == null) plain.add(rule);
+        }
+        memo.clear();
+    }
+
+    public String find(String host) {
+        String target = exact.get(host);
+        if (target != null) return target;
+        for (int i = host.indexOf('.'); i != -1; i = host.indexOf('.', i + 1)) {
+            String domain = host.substring(i + 1);
+            if ((target = suffix.get(domain)) != null) return target;
+            if ((target = exact.get(domain)) != null) return target;
+        }
+        for (int start = 0, dot; (dot = host.indexOf('.', start)) != -1; start = dot + 1) {
+            for (int end = dot; end != -1; end = host.indexOf('.', end + 1)) if ((target = exact.get(host.substring(start, end))) != null) return target;
+        }
+        if ((target = partial(host)) != null) return target;
+        for (Map.Entry<Pattern, String> entry : regex.entrySet()) if (entry.getKey().matcher(host).matches()) return entry.getValue();
+        return null;
+    }
+
+    private String partial(String host) {
+        if (plain.isEmpty()) return null;
+        String target = memo.get(host);
+        if (target == null) {
+            target = "";
+            for (String rule : plain) {
+                if (!host.contains(rule)) continue;
+                target = exact.get(rule);
+                break;
+            }
+            memo.put(host, target);
+        }
+        return target.isEmpty() ? null : target;
+    }
+
+    private void compile(String rule, String target) {
+        try {
+            regex.put(Pattern.compile(rule), target);
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static boolean isRegex(String rule) {
+        for (int i = 0; i < rule.length(); i++) if (REGEX.indexOf(rule.charAt(i)) != -1) return true;
+        return false;
+    }
+}
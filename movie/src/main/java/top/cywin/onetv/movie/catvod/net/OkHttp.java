@@ -1,20 +1,35 @@
 package top.cywin.onetv.movie.catvod.net;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
 import androidx.collection.ArrayMap;
 
+import top.cywin.onetv.movie.catvod.Init;
 import top.cywin.onetv.movie.catvod.bean.Doh;
 import top.cywin.onetv.movie.catvod.net.interceptor.AuthInterceptor;
+import top.cywin.onetv.movie.catvod.net.interceptor.CacheInterceptor;
+import top.cywin.onetv.movie.catvod.net.interceptor.OfflineInterceptor;
+import top.cywin.onetv.movie.catvod.net.interceptor.PriorityInterceptor;
 import top.cywin.onetv.movie.catvod.net.interceptor.RequestInterceptor;
 import top.cywin.onetv.movie.catvod.net.interceptor.ResponseInterceptor;
+import top.cywin.onetv.movie.catvod.net.interceptor.SingleFlightInterceptor;
 
+import java.io.IOException;
 import java.net.ProxySelector;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
@@ -22,6 +37,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import okhttp3.Call;
+import okhttp3.ConnectionPool;
 import okhttp3.FormBody;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
@@ -37,6 +53,12 @@ public class OkHttp {
     private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(30);
     private static final ProxySelector defaultSelector;
 
+    private final Map<OkCache.Type, OkHttpClient> clients;
+    private final Map<String, OkHttpClient> variants;
+    private final Map<OkPriority.Level, OkHttpClient> levels;
+    private final Map<Object, Set<Call>> calls;
+    private final SingleFlightInterceptor singleFlight;
+    private final ConnectionPool pool;
     private ResponseInterceptor responseInterceptor;
     private RequestInterceptor requestInterceptor;
     private AuthInterceptor authInterceptor;
@@ -58,6 +80,15 @@ public class OkHttp {
         return Loader.INSTANCE;
     }
 
+    private OkHttp() {
+        clients = new ConcurrentHashMap<>();
+        variants = new ConcurrentHashMap<>();
+        levels = new ConcurrentHashMap<>();
+        calls = new ConcurrentHashMap<>();
+        singleFlight = new SingleFlightInterceptor();
+        pool = new ConnectionPool(OkPrewarm.MAX_IDLE, OkPrewarm.KEEP_ALIVE, TimeUnit.MILLISECONDS);
+    }
+
     public void clear() {
         cancelAll();
         dns().clear();
@@ -65,23 +96,47 @@ public class OkHttp {
         authInterceptor().clear();
         requestInterceptor().clear();
         responseInterceptor().clear();
+        OkCache.get().clear();
+        OkPrewarm.get().clear();
     }
 
     public void setDoh(Doh doh) {
-        dns().setDoh(doh.getUrl().isEmpty() ? null : new DnsOverHttps.Builder().client(new OkHttpClient()).url(HttpUrl.get(doh.getUrl())).bootstrapDnsHosts(doh.getHosts()).build());
-        client = null;
+        dns().setDoh(doh.getUrl().isEmpty() ? null : new DnsOverHttps.Builder().client(new OkHttpClient.Builder().connectionPool(get().pool).build()).url(HttpUrl.get(doh.getUrl())).bootstrapDnsHosts(doh.getHosts()).build());
+        reset();
     }
 
     public void setProxy(String proxy) {
         ProxySelector.setDefault(TextUtils.isEmpty(proxy) ? defaultSelector : selector());
         if (!TextUtils.isEmpty(proxy)) selector().setProxy(proxy);
         this.proxy = !TextUtils.isEmpty(proxy);
+        reset();
+    }
+
+    private void reset() {
         client = null;
+        clients.clear();
+        variants.clear();
+        levels.clear();
     }
 
     public static OkDns dns() {
         if (get().dns != null) return get().dns;
-        return get().dns = new OkDns();
+        get().dns = new OkDns();
+        register();
+        return get().dns;
+    }
+
+    private static void register() {
+        try {
+            ConnectivityManager manager = (ConnectivityManager) Init.context().getSystemService(Context.CONNECTIVITY_SERVICE);
+            manager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    dns().onNetworkChanged();
+                }
+            });
+        } catch (Exception ignored) {
+        }
     }
 
     public static ResponseInterceptor responseInterceptor() {
@@ -109,16 +164,39 @@ public class OkHttp {
         return get().client = getBuilder().build();
     }
 
+    public static OkHttpClient client(OkCache.Type type) {
+        OkHttpClient client = get().clients.get(type);
+        if (client != null) return client;
+        client = client(type.getLevel()).newBuilder().cache(OkCache.get().cache(type)).addInterceptor(get().singleFlight).addInterceptor(new OfflineInterceptor()).addNetworkInterceptor(new CacheInterceptor(type)).build();
+        get().clients.put(type, client);
+        return client;
+    }
+
+    public static OkHttpClient client(OkPriority.Level level) {
+        OkHttpClient client = get().levels.get(level);
+        if (client != null) return client;
+        client = client().newBuilder().dispatcher(OkPriority.get().dispatcher(level)).addInterceptor(new PriorityInterceptor(level)).build();
+        get().levels.put(level, client);
+        return client;
+    }
+
     public static OkHttpClient client(long timeout) {
-        return client().newBuilder().connectTimeout(timeout, TimeUnit.MILLISECONDS).readTimeout(timeout, TimeUnit.MILLISECONDS).writeTimeout(timeout, TimeUnit.MILLISECONDS).build();
+        return client(true, timeout);
     }
 
     public static OkHttpClient noRedirect(long timeout) {
-        return client().newBuilder().connectTimeout(timeout, TimeUnit.MILLISECONDS).readTimeout(timeout, TimeUnit.MILLISECONDS).writeTimeout(timeout, TimeUnit.MILLISECONDS).followRedirects(false).followSslRedirects(false).build();
+        return client(false, timeout);
     }
 
     public static OkHttpClient client(boolean redirect, long timeout) {
-        return redirect ? client(timeout) : noRedirect(timeout);
+        String key = redirect + "@" + timeout;
+        OkHttpClient client = get().variants.get(key);
+        if (client != null) return client;
+        OkHttpClient.Builder builder = client().newBuilder().connectTimeout(timeout, TimeUnit.MILLISECONDS).readTimeout(timeout, TimeUnit.MILLISECONDS).writeTimeout(timeout, TimeUnit.MILLISECONDS).followRedirects(redirect).followSslRedirects(redirect);
+        if (!redirect) builder.interceptors().add(0, RequestInterceptor.MANUAL_REDIRECT);
+        client = builder.build();
+        get().variants.put(key, client);
+        return client;
     }
 
     public static String string(String url) {
@@ -142,8 +220,12 @@ public class OkHttp {
     }
 
     public static byte[] bytes(String url) {
+        return bytes(client(), url);
+    }
+
+    public static byte[] bytes(OkHttpClient client, String url) {
         if (!url.startsWith("http")) return new byte[0];
-        try (Response res = newCall(url).execute()) {
+        try (Response res = newCall(client, url).execute()) {
             return res.body().bytes();
         } catch (Exception e) {
             e.printStackTrace();
@@ -151,6 +233,22 @@ public class OkHttp {
         }
     }
 
+    public static OkStream stream(String url) throws IOException {
+        return stream(newCall(url), OkStream.UNLIMITED);
+    }
+
+    public static OkStream stream(String url, Map<String, String> headers) throws IOException {
+        return stream(newCall(url, Headers.of(headers)), OkStream.UNLIMITED);
+    }
+
+    public static OkStream stream(String url, Map<String, String> headers, long limit) throws IOException {
+        return stream(newCall(url, Headers.of(headers)), limit);
+    }
+
+    public static OkStream stream(Call call, long limit) throws IOException {
+        return OkStream.open(call, limit);
+    }
+
     public static Call newCall(String url) {
         return client().newCall(new Request.Builder().url(url).build());
     }
@@ -168,11 +266,19 @@ public class OkHttp {
     }
 
     public static Call newCall(String url, Headers headers) {
-        return client().newCall(new Request.Builder().url(url).headers(headers).build());
+        return newCall(client(), url, headers);
+    }
+
+    public static Call newCall(OkHttpClient client, String url, Headers headers) {
+        return client.newCall(new Request.Builder().url(url).headers(headers).build());
     }
 
     public static Call newCall(String url, Headers headers, ArrayMap<String, String> params) {
-        return client().newCall(new Request.Builder().url(buildUrl(url, params)).headers(headers).build());
+        return newCall(client(), url, headers, params);
+    }
+
+    public static Call newCall(OkHttpClient client, String url, Headers headers, ArrayMap<String, String> params) {
+        return client.newCall(new Request.Builder().url(buildUrl(url, params)).headers(headers).build());
     }
 
     public static Call newCall(String url, Headers headers, RequestBody body) {
@@ -184,12 +290,33 @@ public class OkHttp {
     }
 
     public static void cancel(String tag) {
-        for (Call call : client().dispatcher().queuedCalls()) if (tag.equals(call.request().tag())) call.cancel();
-        for (Call call : client().dispatcher().runningCalls()) if (tag.equals(call.request().tag())) call.cancel();
+        Set<Call> items = get().calls.remove(tag);
+        if (items != null) for (Call call : new ArrayList<>(items)) call.cancel();
     }
 
     public static void cancelAll() {
         client().dispatcher().cancelAll();
+        OkPriority.get().cancelAll();
+        get().calls.clear();
+    }
+
+    static void track(Call call) {
+        Object tag = call.request().tag();
+        if (tag == null) return;
+        get().calls.compute(tag, (k, items) -> {
+            if (items == null) items = Collections.newSetFromMap(new WeakHashMap<>());
+            items.add(call);
+            return items;
+        });
+    }
+
+    static void untrack(Call call) {
+        Object tag = call.request().tag();
+        if (tag == null) return;
+        get().calls.computeIfPresent(tag, (k, items) -> {
+            items.remove(call);
+            return items.isEmpty() ? null : items;
+        });
     }
 
     public static FormBody toBody(ArrayMap<String, String> params) {
@@ -205,7 +332,7 @@ public class OkHttp {
     }
 
     private static OkHttpClient.Builder getBuilder() {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder().cookieJar(OkCookieJar.get()).addInterceptor(requestInterceptor()).addInterceptor(authInterceptor()).addNetworkInterceptor(responseInterceptor()).connectTimeout(TIMEOUT, TimeUnit.MILLISECONDS).readTimeout(TIMEOUT, TimeUnit.MILLISECONDS).writeTimeout(TIMEOUT, TimeUnit.MILLISECONDS).dns(dns()).hostnameVerifier((hostname, session) -> true).sslSocketFactory(getSSLContext().getSocketFactory(), trustAllCertificates());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder().cookieJar(OkCookieJar.get()).addInterceptor(requestInterceptor()).addInterceptor(authInterceptor()).addNetworkInterceptor(responseInterceptor()).connectTimeout(TIMEOUT, TimeUnit.MILLISECONDS).readTimeout(TIMEOUT, TimeUnit.MILLISECONDS).writeTimeout(TIMEOUT, TimeUnit.MILLISECONDS).dns(dns()).connectionPool(get().pool).eventListenerFactory(call -> new OkEventListener()).hostnameVerifier((hostname, session) -> true).sslSocketFactory(getSSLContext().getSocketFactory(), trustAllCertificates());
         HttpLoggingInterceptor logging = new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY);
         builder.proxySelector(get().proxy ? selector() : defaultSelector);
         //builder.addNetworkInterceptor(logging);
@@ -0,0 +1,163 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import android.os.SystemClock;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling latency histograms per host and per request class, fed by {@link OkEventListener}.
+ * Each histogram keeps the current and the previous window, so a snapshot always covers
+ * between one and two {@link #WINDOW}s of traffic.
+ */
+public class OkMetrics {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(5);
+    private static final long[] BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+    private static final int MAX_HOSTS = 256;
+
+    public enum Phase {
+        DNS, CONNECT, TLS, TTFB, BODY, TOTAL
+    }
+
+    private final Map<String, Stats> hosts;
+    private final Map<String, Stats> levels;
+
+    private static class Loader {
+        static volatile OkMetrics INSTANCE = new OkMetrics();
+    }
+
+    public static OkMetrics get() {
+        return Loader.INSTANCE;
+    }
+
+    private OkMetrics() {
+        levels = new LinkedHashMap<>();
+        hosts = new LinkedHashMap<String, Stats>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+                return size() > MAX_HOSTS;
+            }
+        };
+    }
+
+    public synchronized void record(String host, String level, long[] phases, boolean failed) {
+        Stats byHost = hosts.get(host);
+        if (byHost == null) hosts.put(host, byHost = new Stats());
+        Stats byLevel = levels.get(level);
+        if (byLevel == null) levels.put(level, byLevel = new Stats());
+        long now = SystemClock.elapsedRealtime();
+        byHost.record(now, phases, failed);
+        byLevel.record(now, phases, failed);
+    }
+
+    public synchronized JsonObject toJson() {
+        long now = SystemClock.elapsedRealtime();
+        JsonObject object = new JsonObject();
+        object.add("host", toJson(hosts, now));
+        object.add("class", toJson(levels, now));
+        return object;
+    }
+
+    public synchronized void clear() {
+        hosts.clear();
+        levels.clear();
+    }
+
+    private JsonObject toJson(Map<String, Stats> map, long now) {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, Stats> entry : map.entrySet()) object.add(entry.getKey(), entry.getValue().toJson(now));
+        return object;
+    }
+
+    private static class Stats {
+
+        private final Histogram[] histograms;
+        private final Histogram errors;
+
+        Stats() {
+            histograms = new Histogram[Phase.values().length];
+            for (int i = 0; i < histograms.length; i++) histograms[i] = new Histogram();
+            errors = new Histogram();
+        }
+
+        void record(long now, long[] phases, boolean failed) {
+            for (int i = 0; i < phases.length; i++) if (phases[i] >= 0) histograms[i].add(now, phases[i]);
+            if (failed) errors.add(now, 0);
+        }
+
+        JsonObject toJson(long now) {
+            JsonObject object = new JsonObject();
+            for (Phase phase : Phase.values()) {
+                Histogram histogram = histograms[phase.ordinal()];
+                if (histogram.count(now) > 0) object.add(phase.name().toLowerCase(), histogram.toJson(now));
+            }
+            object.addProperty("errors", errors.count(now));
+            return object;
+        }
+    }
+
+    private static class Histogram {
+
+        private long[] current = new long[BOUNDS.length];
+        private long[] previous = new long[BOUNDS.length];
+        private long start;
+        private long sum;
+        private long previousSum;
+
+        void add(long now, long value) {
+            rotate(now);
+            current[bucket(value)]++;
+            sum += value;
+        }
+
+        long count(long now) {
+            rotate(now);
+            long count = 0;
+            for (int i = 0; i < current.length; i++) count += current[i] + previous[i];
+            return count;
+        }
+
+        JsonObject toJson(long now) {
+            long count = count(now);
+            JsonObject object = new JsonObject();
+            object.addProperty("count", count);
+            object.addProperty("avg", count == 0 ? 0 : (sum + previousSum) / count);
+            object.addProperty("p50", percentile(count, 0.5));
+            object.addProperty("p90", percentile(count, 0.9));
+            object.addProperty("p99", percentile(count, 0.99));
+            return object;
+        }
+
+        private long percentile(long count, double rank) {
+            long target = (long) Math.ceil(count * rank);
+            long seen = 0;
+            for (int i = 0; i < current.length; i++) {
+                seen += current[i] + previous[i];
+                if (seen >= target) return BOUNDS[i];
+            }
+            return 0;
+        }
+
+        private void rotate(long now) {
+            if (now - start < WINDOW) return;
+            boolean skipped = now - start >= WINDOW * 2;
+            long[] recycled = previous;
+            previous = skipped ? new long[current.length] : current;
+            previousSum = skipped ? 0 : sum;
+            current = recycled;
+            Arrays.fill(current, 0);
+            sum = 0;
+            start = now;
+        }
+
+        private static int bucket(long value) {
+            for (int i = 0; i < BOUNDS.length; i++) if (value <= BOUNDS[i]) return i;
+            return BOUNDS.length - 1;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Opens pooled connections ahead of time to the hosts most likely to be hit next, so DNS, TCP and
+ * TLS (with ALPN picking HTTP/2 where offered) are paid off the critical path. Hosts are ranked by
+ * how often they appear in the given urls, earlier urls winning ties, and each host is warmed at most
+ * once per {@link #KEEP_ALIVE} so the connection is still idle in the pool when it is needed.
+ */
+public class OkPrewarm {
+
+    public static final long KEEP_ALIVE = TimeUnit.MINUTES.toMillis(5);
+    public static final int MAX_IDLE = 16;
+
+    private static final String TAG = "prewarm";
+    private static final int LIMIT = 8;
+
+    private final Map<String, Long> warmed;
+
+    private static class Loader {
+        static volatile OkPrewarm INSTANCE = new OkPrewarm();
+    }
+
+    public static OkPrewarm get() {
+        return Loader.INSTANCE;
+    }
+
+    private OkPrewarm() {
+        warmed = new ConcurrentHashMap<>();
+    }
+
+    public void warm(List<String> urls) {
+        long now = SystemClock.elapsedRealtime();
+        for (HttpUrl url : rank(urls)) {
+            Long time = warmed.get(url.toString());
+            if (time != null && now - time < KEEP_ALIVE / 2) continue;
+            warmed.put(url.toString(), now);
+            connect(url);
+        }
+    }
+
+    public void clear() {
+        OkHttp.cancel(TAG);
+        warmed.clear();
+    }
+
+    private List<HttpUrl> rank(List<String> urls) {
+        Map<HttpUrl, Integer> scores = new LinkedHashMap<>();
+        for (String url : urls) {
+            HttpUrl origin = origin(url);
+            if (origin == null) continue;
+            Integer score = scores.get(origin);
+            scores.put(origin, score == null ? 1 : score + 1);
+        }
+        List<Map.Entry<HttpUrl, Integer>> entries = new ArrayList<>(scores.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        List<HttpUrl> items = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < LIMIT; i++) items.add(entries.get(i).getKey());
+        return items;
+    }
+
+    private HttpUrl origin(String url) {
+        HttpUrl item = url == null ? null : HttpUrl.parse(url);
+        if (item == null || item.host().equals("127.0.0.1") || item.host().equals("localhost")) return null;
+        return new HttpUrl.Builder().scheme(item.scheme()).host(item.host()).port(item.port()).build();
+    }
+
+    private void connect(HttpUrl url) {
+        Request request = new Request.Builder().url(url).head().tag(TAG).build();
+        OkHttp.client(OkPriority.Level.BACKGROUND).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                response.close();
+            }
+
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                warmed.remove(url.toString());
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+
+public class OkPriority {
+
+    private static final long MAX_PAUSE = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toNanos(5);
+    private static final long SLICE = 100;
+
+    public enum Level {
+        PLAYBACK(64, 16),
+        INTERACTIVE(32, 8),
+        PREFETCH(8, 4),
+        BACKGROUND(4, 2);
+
+        private final int max;
+        private final int maxPerHost;
+
+        Level(int max, int maxPerHost) {
+            this.max = max;
+            this.maxPerHost = maxPerHost;
+        }
+
+        public boolean isPreemptible() {
+            return this == PREFETCH || this == BACKGROUND;
+        }
+    }
+
+    private final Map<Level, Dispatcher> dispatchers;
+    private final Map<Level, Semaphore> permits;
+    private final Map<Call, Level> holders;
+    private volatile boolean buffering;
+
+    private static class Loader {
+        static volatile OkPriority INSTANCE = new OkPriority();
+    }
+
+    public static OkPriority get() {
+        return Loader.INSTANCE;
+    }
+
+    private OkPriority() {
+        dispatchers = new EnumMap<>(Level.class);
+        permits = new EnumMap<>(Level.class);
+        holders = new ConcurrentHashMap<>();
+        for (Level level : Level.values()) permits.put(level, new Semaphore(level.max, true));
+    }
+
+    public synchronized Dispatcher dispatcher(Level level) {
+        Dispatcher dispatcher = dispatchers.get(level);
+        if (dispatcher != null) return dispatcher;
+        dispatchers.put(level, dispatcher = new Dispatcher());
+        dispatcher.setMaxRequests(level.max);
+        dispatcher.setMaxRequestsPerHost(level.maxPerHost);
+        return dispatcher;
+    }
+
+    /**
+     * Takes a permit of the level for the call, released by {@link #release(Call)} when the call ends.
+     * A call that cannot get one within {@link #MAX_WAIT} goes ahead without it, so calls that never
+     * end can slow their class down but not stall it. Returns whether a permit was taken.
+     */
+    public boolean acquire(Level level, Call call) throws IOException {
+        try {
+            if (level.isPreemptible()) awaitPlayback(call);
+            Semaphore semaphore = permits.get(level);
+            long deadline = System.nanoTime() + MAX_WAIT;
+            while (!semaphore.tryAcquire(SLICE, TimeUnit.MILLISECONDS)) {
+                if (call.isCanceled()) throw new IOException("Canceled");
+                if (System.nanoTime() >= deadline) return false;
+            }
+            holders.put(call, level);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + level);
+        }
+    }
+
+    public void release(Call call) {
+        Level level = holders.remove(call);
+        if (level != null) permits.get(level).release();
+    }
+
+    public boolean isBuffering() {
+        return buffering;
+    }
+
+    public void setBuffering(boolean buffering) {
+        synchronized (this) {
+            if (this.buffering == buffering) return;
+            this.buffering = buffering;
+            if (!buffering) notifyAll();
+        }
+        if (buffering) dispatcher(Level.PREFETCH).cancelAll();
+    }
+
+    public synchronized void cancelAll() {
+        for (Dispatcher dispatcher : dispatchers.values()) dispatcher.cancelAll();
+    }
+
+    private synchronized void awaitPlayback(Call call) throws InterruptedException {
+        long deadline = System.nanoTime() + MAX_PAUSE;
+        long remaining;
+        while (buffering && !call.isCanceled() && (remaining = deadline - System.nanoTime()) > 0) wait(Math.min(SLICE, Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))));
+    }
+}
@@ -0,0 +1,103 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import androidx.annotation.NonNull;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.Dns;
+
+/**
+ * Queries every resolver at once and returns the first non-empty answer. Addresses are
+ * interleaved by family, starting with the family that most recently connected, so a stalled
+ * family falls through to the other one on the next route attempt.
+ */
+public class OkRaceDns implements Dns {
+
+    private final List<Dns> resolvers;
+    private final Executor executor;
+    private final long timeout;
+
+    private volatile boolean preferIpv6;
+
+    public OkRaceDns(Executor executor, long timeout, Dns... resolvers) {
+        this.resolvers = Arrays.asList(resolvers);
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    public boolean isPreferIpv6() {
+        return preferIpv6;
+    }
+
+    public void onConnected(InetAddress address) {
+        preferIpv6 = address instanceof Inet6Address;
+    }
+
+    public void onConnectFailed(InetAddress address) {
+        if ((address instanceof Inet6Address) == preferIpv6) preferIpv6 = !preferIpv6;
+    }
+
+    @NonNull
+    @Override
+    public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+        if (resolvers.size() == 1) return sort(resolvers.get(0).lookup(hostname));
+        return sort(race(hostname));
+    }
+
+    private List<InetAddress> race(String hostname) throws UnknownHostException {
+        CompletionService<List<InetAddress>> service = new ExecutorCompletionService<>(executor);
+        List<Future<List<InetAddress>>> futures = new ArrayList<>();
+        for (Dns dns : resolvers) futures.add(service.submit(() -> dns.lookup(hostname)));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Exception error = null;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<List<InetAddress>> future = service.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (future == null) break;
+                try {
+                    List<InetAddress> result = future.get();
+                    if (result != null && !result.isEmpty()) return result;
+                } catch (Exception e) {
+                    error = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        } finally {
+            for (Future<List<InetAddress>> future : futures) future.cancel(true);
+        }
+        UnknownHostException exception = new UnknownHostException(hostname);
+        if (error == null || error instanceof InterruptedException) exception.initCause(new TimeoutException(hostname));
+        else exception.initCause(error.getCause() != null ? error.getCause() : error);
+        throw exception;
+    }
+
+    public static boolean isTimeout(UnknownHostException e) {
+        return e.getCause() instanceof TimeoutException;
+    }
+
+    public List<InetAddress> sort(List<InetAddress> addresses) {
+        List<InetAddress> preferred = new ArrayList<>();
+        List<InetAddress> fallback = new ArrayList<>();
+        for (InetAddress address : addresses) ((address instanceof Inet6Address) == preferIpv6 ? preferred : fallback).add(address);
+        if (preferred.isEmpty() || fallback.isEmpty()) return addresses;
+        List<InetAddress> sorted = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(preferred.size(), fallback.size()); i++) {
+            if (i < preferred.size()) sorted.add(preferred.get(i));
+            if (i < fallback.size()) sorted.add(fallback.get(i));
+        }
+        return sorted;
+    }
+}
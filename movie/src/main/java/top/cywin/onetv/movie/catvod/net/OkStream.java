@@ -0,0 +1,140 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.Okio;
+
+public class OkStream implements Closeable {
+
+    public static final long UNLIMITED = -1;
+
+    private static final ByteString UTF_8_BOM = ByteString.decodeHex("efbbbf");
+    private static final ByteString UTF_16_BE_BOM = ByteString.decodeHex("feff");
+    private static final ByteString UTF_16_LE_BOM = ByteString.decodeHex("fffe");
+
+    private final Call call;
+    private final Response response;
+    private final BufferedSource source;
+    private Charset charset;
+
+    public static OkStream open(Call call, long limit) throws IOException {
+        Response response = call.execute();
+        ResponseBody body = response.body();
+        if (body == null) {
+            response.close();
+            throw new IOException("Empty body");
+        }
+        if (limit > 0 && body.contentLength() > limit) {
+            response.close();
+            throw new IOException("Body exceeds " + limit + " bytes");
+        }
+        return new OkStream(call, response, limit);
+    }
+
+    private OkStream(Call call, Response response, long limit) {
+        this.call = call;
+        this.response = response;
+        this.source = limit > 0 ? Okio.buffer(new LimitSource(response.body().source(), limit)) : response.body().source();
+    }
+
+    public Response response() {
+        return response;
+    }
+
+    public BufferedSource source() {
+        return source;
+    }
+
+    public InputStream byteStream() {
+        return source.inputStream();
+    }
+
+    public Charset charset() throws IOException {
+        if (charset != null) return charset;
+        return charset = detect();
+    }
+
+    private Charset detect() throws IOException {
+        if (source.rangeEquals(0, UTF_8_BOM)) {
+            source.skip(UTF_8_BOM.size());
+            return StandardCharsets.UTF_8;
+        }
+        if (source.rangeEquals(0, UTF_16_BE_BOM)) {
+            source.skip(UTF_16_BE_BOM.size());
+            return StandardCharsets.UTF_16BE;
+        }
+        if (source.rangeEquals(0, UTF_16_LE_BOM)) {
+            source.skip(UTF_16_LE_BOM.size());
+            return StandardCharsets.UTF_16LE;
+        }
+        MediaType type = response.body().contentType();
+        Charset charset = type == null ? null : type.charset(null);
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    public Reader reader() throws IOException {
+        return new InputStreamReader(byteStream(), charset());
+    }
+
+    public JsonReader json() throws IOException {
+        return new JsonReader(reader());
+    }
+
+    public String string() throws IOException {
+        return source.readString(charset());
+    }
+
+    public byte[] bytes() throws IOException {
+        return source.readByteArray();
+    }
+
+    public boolean isCanceled() {
+        return call.isCanceled();
+    }
+
+    public void cancel() {
+        call.cancel();
+    }
+
+    @Override
+    public void close() {
+        response.close();
+    }
+
+    private static class LimitSource extends ForwardingSource {
+
+        private final long limit;
+        private long total;
+
+        LimitSource(okio.Source delegate, long limit) {
+            super(delegate);
+            this.limit = limit;
+        }
+
+        @Override
+        public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) total += read;
+            if (total > limit) throw new IOException("Body exceeds " + limit + " bytes");
+            return read;
+        }
+    }
+}
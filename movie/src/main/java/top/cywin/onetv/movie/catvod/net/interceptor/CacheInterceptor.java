@@ -0,0 +1,34 @@
+package top.cywin.onetv.movie.catvod.net.interceptor;
+
+import androidx.annotation.NonNull;
+
+import top.cywin.onetv.movie.catvod.net.OkCache;
+import com.google.common.net.HttpHeaders;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class CacheInterceptor implements Interceptor {
+
+    private final OkCache.Type type;
+
+    public CacheInterceptor(OkCache.Type type) {
+        this.type = type;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || !response.isSuccessful()) return response;
+        if (response.header(HttpHeaders.CACHE_CONTROL) != null || response.header(HttpHeaders.EXPIRES) != null) return response;
+        boolean validator = response.header(HttpHeaders.ETAG) != null || response.header(HttpHeaders.LAST_MODIFIED) != null;
+        String control = OkCache.get().cacheControl(type, request.url().host(), validator);
+        if (control == null) return response;
+        return response.newBuilder().removeHeader(HttpHeaders.PRAGMA).header(HttpHeaders.CACHE_CONTROL, control).build();
+    }
+}
@@ -0,0 +1,31 @@
+package top.cywin.onetv.movie.catvod.net.interceptor;
+
+import androidx.annotation.NonNull;
+
+import top.cywin.onetv.movie.catvod.net.OkPriority;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+public class PriorityInterceptor implements Interceptor {
+
+    private final OkPriority.Level level;
+
+    public PriorityInterceptor(OkPriority.Level level) {
+        this.level = level;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        OkPriority.get().acquire(level, chain.call());
+        try {
+            return chain.proceed(chain.request().newBuilder().tag(OkPriority.Level.class, level).build());
+        } catch (IOException | RuntimeException e) {
+            OkPriority.get().release(chain.call());
+            throw e;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package top.cywin.onetv.movie.catvod.net.interceptor;
 import androidx.annotation.NonNull;
 
 import top.cywin.onetv.movie.catvod.net.OkCookieJar;
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+
+import com.google.common.net.HttpHeaders;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,6 +17,10 @@ import okhttp3.Response;
 
 public class RequestInterceptor implements Interceptor {
 
+    public static final Interceptor MANUAL_REDIRECT = chain -> chain.proceed(chain.request().newBuilder().tag(Manual.class, new Manual()).build());
+
+    private static final int MAX_HOPS = 5;
+
     private final ConcurrentHashMap<String, String> authMap;
 
     public RequestInterceptor() {
@@ -29,10 +36,26 @@ public class RequestInterceptor implements Interceptor {
     public Response intercept(@NonNull Chain chain) throws IOException {
         Request request = chain.request();
         Request.Builder builder = request.newBuilder();
-        HttpUrl url = request.url();
+        HttpUrl url = permanent(request);
+        if (url != request.url()) builder.url(url);
+        if (!url.host().equals(request.url().host())) builder.removeHeader(HttpHeaders.AUTHORIZATION).removeHeader(HttpHeaders.COOKIE);
         checkAuth(url, builder);
+        request = builder.build();
         OkCookieJar.sync(url, request);
-        return chain.proceed(builder.build());
+        return chain.proceed(request);
+    }
+
+    private HttpUrl permanent(Request request) {
+        HttpUrl url = request.url();
+        if (request.tag(Manual.class) != null) return url;
+        if (!"GET".equals(request.method()) && !"HEAD".equals(request.method())) return url;
+        for (int i = 0; i < MAX_HOPS; i++) {
+            String target = OkHttp.responseInterceptor().getPermanent(url);
+            HttpUrl next = target == null ? null : HttpUrl.parse(target);
+            if (next == null) break;
+            url = next;
+        }
+        return url;
     }
 
     private void checkAuth(HttpUrl url, Request.Builder builder) {
@@ -40,4 +63,7 @@ public class RequestInterceptor implements Interceptor {
         if (auth != null) authMap.put(url.host(), auth);
         if (authMap.containsKey(url.host()) && auth == null) builder.url(url.newBuilder().addQueryParameter("auth", authMap.get(url.host())).build());
     }
+
+    private static class Manual {
+    }
 }
@@ -1,5 +1,7 @@
 package top.cywin.onetv.movie.catvod.net.interceptor;
 
+import android.os.SystemClock;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -9,12 +11,19 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.Request;
@@ -25,24 +34,42 @@ import okio.Okio;
 
 public class ResponseInterceptor implements Interceptor {
 
-    private final ConcurrentHashMap<String, String> redirectMap;
-    private final ConcurrentHashMap<String, JsonObject> headerMap;
+    private static final int MEMO_SIZE = 512;
+    private static final long REDIRECT_TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final long PERMANENT_TTL = TimeUnit.HOURS.toMillis(6);
+    private static final Set<String> SIGNED = new HashSet<>(Arrays.asList("expires", "expire", "sign", "signature", "token", "auth_key", "wssecret", "wstime", "txsecret", "txtime", "x-amz-signature", "policy", "key-pair-id"));
+
+    private final Memo redirectMap;
+    private final Memo permanentMap;
+    private final ConcurrentHashMap<String, Headers> headerMap;
+    private final ConcurrentHashMap<String, Headers> suffixMap;
 
     public ResponseInterceptor() {
         headerMap = new ConcurrentHashMap<>();
-        redirectMap = new ConcurrentHashMap<>();
+        suffixMap = new ConcurrentHashMap<>();
+        redirectMap = new Memo(MEMO_SIZE);
+        permanentMap = new Memo(MEMO_SIZE);
     }
 
     public synchronized void setHeaders(List<JsonElement> items) {
         for (JsonElement item : items) {
             JsonObject object = Json.safeObject(item);
-            headerMap.put(object.get("host").getAsString(), object.get("header").getAsJsonObject());
+            String host = object.get("host").getAsString();
+            Headers headers = toHeaders(object.get("header").getAsJsonObject());
+            if (host.startsWith("*.")) suffixMap.put(host.substring(2), headers);
+            else headerMap.put(host, headers);
         }
     }
 
     public void clear() {
         headerMap.clear();
+        suffixMap.clear();
         redirectMap.clear();
+        permanentMap.clear();
+    }
+
+    public String getPermanent(HttpUrl url) {
+        return permanentMap.get(url.toString());
     }
 
     @NonNull
@@ -50,22 +77,48 @@ public class ResponseInterceptor implements Interceptor {
     public Response intercept(@NonNull Chain chain) throws IOException {
         Request request = check(chain.request());
         Response response = chain.proceed(request);
+        String location = response.header(HttpHeaders.LOCATION);
         if ("deflate".equals(response.header(HttpHeaders.CONTENT_ENCODING))) return deflate(response);
-        if (response.code() == 406 && redirectMap.containsKey(request.url().toString())) return redirect(request, response);
-        if (response.code() == 302 && response.header(HttpHeaders.LOCATION) != null) redirectMap.put(response.header(HttpHeaders.LOCATION), request.url().toString());
+        String target = response.code() == 406 ? redirectMap.get(request.url().toString()) : null;
+        if (target != null) return redirect(request, response, target);
+        if (response.code() == 302 && location != null) redirectMap.put(location, request.url().toString(), REDIRECT_TTL);
+        if ((response.code() == 301 || response.code() == 308) && location != null) remember(request, location);
         return response;
     }
 
+    private void remember(Request request, String location) {
+        HttpUrl target = request.url().resolve(location);
+        if (target != null && !isSigned(target)) permanentMap.put(request.url().toString(), target.toString(), PERMANENT_TTL);
+    }
+
+    private static boolean isSigned(HttpUrl url) {
+        for (String name : url.queryParameterNames()) if (SIGNED.contains(name.toLowerCase())) return true;
+        return false;
+    }
+
     private Request check(Request request) {
-        String host = request.url().host();
+        Headers headers = find(request.url().host());
+        if (headers == null) return request;
         Request.Builder builder = request.newBuilder();
-        if (!headerMap.containsKey(host)) return request;
-        for (Map.Entry<String, JsonElement> entry : headerMap.get(host).entrySet()) builder.header(entry.getKey(), entry.getValue().getAsString());
+        for (int i = 0; i < headers.size(); i++) builder.header(headers.name(i), headers.value(i));
         return builder.build();
     }
 
-    private Response redirect(Request request, Response response) {
-        return new Response.Builder().request(request).protocol(response.protocol()).code(302).message("Found").header(HttpHeaders.LOCATION, redirectMap.get(request.url().toString())).build();
+    private Headers find(String host) {
+        Headers headers = headerMap.get(host);
+        if (headers != null || suffixMap.isEmpty()) return headers;
+        for (int i = host.indexOf('.'); i != -1; i = host.indexOf('.', i + 1)) if ((headers = suffixMap.get(host.substring(i + 1))) != null) return headers;
+        return null;
+    }
+
+    private Headers toHeaders(JsonObject object) {
+        Headers.Builder builder = new Headers.Builder();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) builder.set(entry.getKey(), entry.getValue().getAsString());
+        return builder.build();
+    }
+
+    private Response redirect(Request request, Response response, String target) {
+        return new Response.Builder().request(request).protocol(response.protocol()).code(302).message("Found").header(HttpHeaders.LOCATION, target).build();
     }
 
     private Response deflate(Response response) {
@@ -89,4 +142,45 @@ public class ResponseInterceptor implements Interceptor {
             }
         }).build();
     }
+
+    private static class Memo {
+
+        private final LinkedHashMap<String, Entry> map;
+
+        Memo(int size) {
+            this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > size;
+                }
+            };
+        }
+
+        synchronized void put(String key, String value, long ttl) {
+            map.put(key, new Entry(value, SystemClock.elapsedRealtime() + ttl));
+        }
+
+        synchronized String get(String key) {
+            Entry entry = map.get(key);
+            if (entry == null) return null;
+            if (entry.expire > SystemClock.elapsedRealtime()) return entry.value;
+            map.remove(key);
+            return null;
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final long expire;
+
+        Entry(String value, long expire) {
+            this.value = value;
+            this.expire = expire;
+        }
+    }
 }
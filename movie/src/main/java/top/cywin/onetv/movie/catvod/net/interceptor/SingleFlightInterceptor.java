@@ -0,0 +1,102 @@
+package top.cywin.onetv.movie.catvod.net.interceptor;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.net.HttpHeaders;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Collapses concurrent identical GET requests into one network call. The first caller fetches and
+ * buffers the body, later callers with the same url and headers wait for it and get their own copy.
+ * Bodies larger than {@link #LIMIT} are not shared, waiters then fall back to their own call. Waiters
+ * check for cancellation between short waits, so canceling a follower does not wait on the leader.
+ */
+public class SingleFlightInterceptor implements Interceptor {
+
+    private static final long LIMIT = 4 * 1024 * 1024;
+    private static final long SLICE = 100;
+
+    private final ConcurrentHashMap<String, Flight> flights;
+
+    public SingleFlightInterceptor() {
+        flights = new ConcurrentHashMap<>();
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) || request.header(HttpHeaders.RANGE) != null) return chain.proceed(request);
+        String key = request.url() + "\n" + request.headers();
+        Flight flight = new Flight();
+        Flight leader = flights.putIfAbsent(key, flight);
+        if (leader != null) return follow(chain, request, leader);
+        try {
+            Response response = chain.proceed(request);
+            flight.snapshot = snapshot(response);
+            return flight.snapshot == null ? response : flight.snapshot.copy(request);
+        } finally {
+            flights.remove(key, flight);
+            flight.latch.countDown();
+        }
+    }
+
+    private Response follow(Chain chain, Request request, Flight leader) throws IOException {
+        try {
+            long deadline = System.currentTimeMillis() + chain.connectTimeoutMillis() + chain.readTimeoutMillis();
+            while (!leader.latch.await(Math.min(SLICE, Math.max(0, deadline - System.currentTimeMillis())), TimeUnit.MILLISECONDS)) {
+                if (chain.call().isCanceled()) throw new IOException("Canceled");
+                if (System.currentTimeMillis() >= deadline) return chain.proceed(request);
+            }
+            if (chain.call().isCanceled()) throw new IOException("Canceled");
+            if (leader.snapshot != null) return leader.snapshot.copy(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Canceled", e);
+        }
+        return chain.proceed(request);
+    }
+
+    private Snapshot snapshot(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null || body.contentLength() > LIMIT) return null;
+        BufferedSource source = body.source();
+        if (source.request(LIMIT + 1)) return null;
+        byte[] bytes = body.bytes();
+        return new Snapshot(response.newBuilder().body(null).build(), bytes, body.contentType());
+    }
+
+    private static class Flight {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Snapshot snapshot;
+    }
+
+    private static class Snapshot {
+
+        private final Response head;
+        private final byte[] bytes;
+        private final MediaType type;
+
+        Snapshot(Response head, byte[] bytes, MediaType type) {
+            this.head = head;
+            this.bytes = bytes;
+            this.type = type;
+        }
+
+        Response copy(Request request) {
+            return head.newBuilder().request(request).body(ResponseBody.create(bytes, type)).build();
+        }
+    }
+}
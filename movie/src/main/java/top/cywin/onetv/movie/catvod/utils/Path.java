@@ -80,6 +80,10 @@ public class Path {
         return mkdir(new File(cache() + File.separator + "thunder"));
     }
 
+    public static File download() {
+        return mkdir(new File(files() + File.separator + "download"));
+    }
+
     public static File root(String name) {
         return new File(root(), name);
     }
@@ -116,6 +120,10 @@ public class Path {
         return mkdir(new File(thunder(), name));
     }
 
+    public static File download(String name) {
+        return mkdir(new File(download(), name));
+    }
+
     public static File local(String path) {
         path = path.replace("file:/", "");
         File file = new File(root(), path);
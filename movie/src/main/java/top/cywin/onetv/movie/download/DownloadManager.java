@@ -0,0 +1,458 @@
+package top.cywin.onetv.movie.download;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.Uri;
+import android.os.StatFs;
+
+import androidx.annotation.NonNull;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.Setting;
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPriority;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Path;
+import top.cywin.onetv.movie.catvod.utils.Util;
+import top.cywin.onetv.movie.server.Server;
+import top.cywin.onetv.movie.utils.UrlUtil;
+import com.google.common.net.HttpHeaders;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Persistent queue of VOD downloads, one task at a time with its ranges or HLS segments fetched in
+ * parallel. Every finished part is recorded so a task resumes where it stopped after a pause, a
+ * network drop or process death. Network failures back off and retry when connectivity returns;
+ * finished items play from disk through the local server's {@code /file} endpoint.
+ */
+public class DownloadManager {
+
+    private static final Pattern URI = Pattern.compile("URI=\"([^\"]+)\"");
+    private static final Pattern BANDWIDTH = Pattern.compile("BANDWIDTH=(\\d+)");
+    private static final long CHUNK = 4 * 1024 * 1024;
+    private static final long RESERVE = 512 * 1024 * 1024;
+    private static final long BACKOFF = TimeUnit.SECONDS.toMillis(5);
+    private static final long CHECKPOINT = TimeUnit.SECONDS.toMillis(2);
+    private static final int RETRY = 8;
+    private static final int THREADS = 4;
+    private static final int BUFFER = 64 * 1024;
+
+    private final Map<String, DownloadTask> tasks;
+    private final ExecutorService executor;
+    private final ExecutorService workers;
+    private final Runnable schedule;
+    private final File file;
+    private DownloadTask current;
+    private Future<?> future;
+    private AtomicLong used;
+    private long saved;
+
+    private static class Loader {
+        static volatile DownloadManager INSTANCE = new DownloadManager();
+    }
+
+    public static DownloadManager get() {
+        return Loader.INSTANCE;
+    }
+
+    private DownloadManager() {
+        tasks = new LinkedHashMap<>();
+        file = Path.files("download.json");
+        executor = Executors.newSingleThreadExecutor();
+        workers = Executors.newFixedThreadPool(THREADS);
+        schedule = this::schedule;
+        load();
+        register();
+        schedule();
+    }
+
+    private void register() {
+        try {
+            ConnectivityManager manager = (ConnectivityManager) App.get().getSystemService(Context.CONNECTIVITY_SERVICE);
+            manager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    onNetwork();
+                }
+            });
+        } catch (Exception ignored) {
+        }
+    }
+
+    public synchronized String add(String name, String url, Map<String, String> headers) {
+        String id = Util.md5(url);
+        DownloadTask task = tasks.get(id);
+        if (task == null) tasks.put(id, task = new DownloadTask(id, name, url, headers));
+        if (task.getState() == DownloadTask.State.ERROR || task.getState() == DownloadTask.State.PAUSE) task.setState(DownloadTask.State.WAIT);
+        save();
+        schedule();
+        return id;
+    }
+
+    public synchronized void pause(String id) {
+        DownloadTask task = tasks.get(id);
+        if (task == null || task.getState() == DownloadTask.State.DONE) return;
+        task.setState(DownloadTask.State.PAUSE);
+        if (task == current) stop();
+        save();
+        schedule();
+    }
+
+    public synchronized void resume(String id) {
+        DownloadTask task = tasks.get(id);
+        if (task == null || task.getState() == DownloadTask.State.DONE || task.getState() == DownloadTask.State.RUNNING) return;
+        task.setState(DownloadTask.State.WAIT);
+        task.resetRetry();
+        save();
+        schedule();
+    }
+
+    public synchronized void delete(String id) {
+        DownloadTask task = tasks.remove(id);
+        if (task == null) return;
+        if (task == current) stop();
+        Path.clear(task.getDir());
+        used = null;
+        save();
+        schedule();
+    }
+
+    public synchronized JsonArray toJson() {
+        JsonArray array = new JsonArray();
+        for (DownloadTask task : tasks.values()) array.add(task.toJson());
+        return array;
+    }
+
+    public synchronized String getPlayUrl(String id) {
+        DownloadTask task = tasks.get(id);
+        if (task == null || task.getState() != DownloadTask.State.DONE) return null;
+        return Server.get().getAddress("/file" + new File(task.getDir(), task.getFile()).getAbsolutePath());
+    }
+
+    private synchronized void onNetwork() {
+        for (DownloadTask task : tasks.values()) if (task.getState() == DownloadTask.State.WAIT) task.resetRetry();
+        schedule();
+    }
+
+    private synchronized void schedule() {
+        if (current != null) return;
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (DownloadTask task : tasks.values()) {
+            if (task.getState() != DownloadTask.State.WAIT) continue;
+            if (task.getRetryAt() <= now) {
+                start(task);
+                return;
+            }
+            next = Math.min(next, task.getRetryAt());
+        }
+        if (next != Long.MAX_VALUE) App.post(schedule, next - now);
+    }
+
+    private void start(DownloadTask task) {
+        current = task;
+        task.setState(DownloadTask.State.RUNNING);
+        save();
+        future = executor.submit(() -> run(task));
+    }
+
+    private void stop() {
+        if (future != null) future.cancel(true);
+        OkHttp.cancel(current.getId());
+        current = null;
+        future = null;
+    }
+
+    private void run(DownloadTask task) {
+        try {
+            if (task.isHls() || task.getItems().isEmpty() && isHls(task)) runHls(task);
+            else runFile(task);
+            finish(task, null, false);
+        } catch (QuotaException e) {
+            finish(task, e.getMessage(), false);
+        } catch (IOException e) {
+            finish(task, e.getMessage(), true);
+        } catch (Exception e) {
+            finish(task, e.getMessage(), false);
+        }
+    }
+
+    private synchronized void finish(DownloadTask task, String error, boolean retry) {
+        if (task != current) return;
+        current = null;
+        future = null;
+        if (error == null) task.setState(DownloadTask.State.DONE);
+        else if (retry && task.retry(System.currentTimeMillis(), BACKOFF) <= RETRY) task.setState(DownloadTask.State.WAIT);
+        else task.setError(error);
+        save();
+        schedule();
+    }
+
+    private boolean isHls(DownloadTask task) throws IOException {
+        if (UrlUtil.path(UrlUtil.uri(task.getUrl())).toLowerCase().endsWith(".m3u8")) return true;
+        try (Response response = call(task, task.getUrl(), "bytes=0-1023")) {
+            String type = String.valueOf(response.body().contentType()).toLowerCase();
+            return type.contains("mpegurl") || response.peekBody(16).string().trim().startsWith("#EXTM3U");
+        }
+    }
+
+    private void runFile(DownloadTask task) throws Exception {
+        File target = new File(task.getDir(), task.getFile().isEmpty() ? "video" + getExt(task.getUrl(), ".mp4") : task.getFile());
+        task.setFile(target.getName());
+        if (task.getFinished().length == 0) probe(task);
+        if (task.getFinished().length == 0) {
+            single(task, target);
+            return;
+        }
+        checkSpace(task.getLength() - target.length());
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            if (raf.length() != task.getLength()) raf.setLength(task.getLength());
+        }
+        List<Runnable> jobs = new ArrayList<>();
+        boolean[] finished = task.getFinished();
+        for (int i = 0; i < finished.length; i++) if (!finished[i]) jobs.add(range(task, target, i));
+        parallel(jobs);
+    }
+
+    private void probe(DownloadTask task) throws IOException {
+        try (Response response = call(task, task.getUrl(), "bytes=0-0")) {
+            String range = response.header(HttpHeaders.CONTENT_RANGE);
+            if (response.code() != 206 || range == null || !range.contains("/")) return;
+            long length = Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+            task.setLength(length);
+            task.setFinished(new boolean[(int) ((length + CHUNK - 1) / CHUNK)]);
+            save();
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private void single(DownloadTask task, File target) throws Exception {
+        try (Response response = call(task, task.getUrl(), null)) {
+            if (!response.isSuccessful()) throw new IOException(String.valueOf(response.code()));
+            checkSpace(response.body().contentLength());
+            try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+                raf.setLength(0);
+                copy(response.body().byteStream(), raf);
+            }
+        }
+    }
+
+    private Runnable range(DownloadTask task, File target, int index) {
+        return () -> {
+            long start = index * CHUNK;
+            long end = Math.min(task.getLength(), start + CHUNK) - 1;
+            try (Response response = call(task, task.getUrl(), "bytes=" + start + "-" + end); RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+                if (response.code() != 206) throw new IOException(String.valueOf(response.code()));
+                raf.seek(start);
+                copy(response.body().byteStream(), raf);
+                task.finish(index);
+                checkpoint();
+            } catch (IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        };
+    }
+
+    private void runHls(DownloadTask task) throws Exception {
+        task.setHls(true);
+        task.setFile("index.m3u8");
+        if (task.getItems().isEmpty()) playlist(task);
+        List<String> items = task.getItems();
+        List<Runnable> jobs = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) if (!task.getFinished()[i]) jobs.add(segment(task, items.get(i), i));
+        parallel(jobs);
+    }
+
+    private void playlist(DownloadTask task) throws IOException {
+        String url = task.getUrl();
+        List<String> lines = lines(task, url);
+        String variant = variant(url, lines);
+        if (variant != null) lines = lines(task, url = variant);
+        if (!lines.contains("#EXT-X-ENDLIST")) throw new IllegalStateException("live playlist");
+        List<String> items = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            if (line.startsWith("#")) {
+                Matcher matcher = URI.matcher(line);
+                if (matcher.find()) {
+                    String name = "k" + items.size() + getExt(matcher.group(1), ".key");
+                    items.add(UrlUtil.resolve(url, matcher.group(1)) + "\n" + name);
+                    line = line.substring(0, matcher.start(1)) + name + line.substring(matcher.end(1));
+                }
+                sb.append(line).append("\n");
+            } else {
+                String name = items.size() + getExt(line, ".ts");
+                items.add(UrlUtil.resolve(url, line) + "\n" + name);
+                sb.append(name).append("\n");
+            }
+        }
+        Path.write(new File(task.getDir(), task.getFile()), sb.toString().getBytes());
+        task.setItems(items);
+        task.setFinished(new boolean[items.size()]);
+        save();
+    }
+
+    private String variant(String url, List<String> lines) {
+        String best = null;
+        long max = -1;
+        for (int i = 0; i < lines.size() - 1; i++) {
+            if (!lines.get(i).startsWith("#EXT-X-STREAM-INF")) continue;
+            Matcher matcher = BANDWIDTH.matcher(lines.get(i));
+            long bandwidth = matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+            if (bandwidth <= max) continue;
+            best = UrlUtil.resolve(url, lines.get(i + 1));
+            max = bandwidth;
+        }
+        return best;
+    }
+
+    private List<String> lines(DownloadTask task, String url) throws IOException {
+        try (Response response = call(task, url, null)) {
+            if (!response.isSuccessful()) throw new IOException(String.valueOf(response.code()));
+            List<String> lines = new ArrayList<>();
+            for (String line : response.body().string().split("\n")) if (!line.trim().isEmpty()) lines.add(line.trim());
+            return lines;
+        }
+    }
+
+    private Runnable segment(DownloadTask task, String item, int index) {
+        return () -> {
+            String[] split = item.split("\n");
+            File part = new File(task.getDir(), split[1] + ".part");
+            try (Response response = call(task, split[0], null)) {
+                if (!response.isSuccessful()) throw new IOException(String.valueOf(response.code()));
+                checkSpace(response.body().contentLength());
+                try (RandomAccessFile raf = new RandomAccessFile(part, "rw")) {
+                    raf.setLength(0);
+                    copy(response.body().byteStream(), raf);
+                }
+                if (!part.renameTo(new File(task.getDir(), split[1]))) throw new IOException("rename " + split[1]);
+                task.finish(index);
+                checkpoint();
+            } catch (IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        };
+    }
+
+    private void parallel(List<Runnable> jobs) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable job : jobs) futures.add(workers.submit(job));
+        try {
+            for (Future<?> item : futures) item.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeIOException) throw ((RuntimeIOException) e.getCause()).getCause();
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        } finally {
+            for (Future<?> item : futures) item.cancel(true);
+        }
+    }
+
+    private Response call(DownloadTask task, String url, String range) throws IOException {
+        Map<String, String> headers = task.getHeaders();
+        if (range != null) headers.put(HttpHeaders.RANGE, range);
+        Request request = new Request.Builder().url(url).headers(Headers.of(headers)).tag(task.getId()).build();
+        return OkHttp.client(OkPriority.Level.BACKGROUND).newCall(request).execute();
+    }
+
+    private void copy(InputStream is, RandomAccessFile raf) throws IOException {
+        byte[] buffer = new byte[BUFFER];
+        int count;
+        while ((count = is.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) throw new IOException("cancelled");
+            raf.write(buffer, 0, count);
+            getUsed().addAndGet(count);
+        }
+    }
+
+    private void checkSpace(long length) throws QuotaException {
+        long quota = Setting.getDownloadQuota() * 1024L * 1024L;
+        if (length > 0 && getUsed().get() + length > quota) throw new QuotaException("quota");
+        if (new StatFs(Path.download().getPath()).getAvailableBytes() - Math.max(length, 0) < RESERVE) throw new QuotaException("storage");
+    }
+
+    private synchronized AtomicLong getUsed() {
+        if (used == null) used = new AtomicLong(size(Path.download()));
+        return used;
+    }
+
+    private static long size(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files == null) return 0;
+        for (File item : files) size += item.isDirectory() ? size(item) : item.length();
+        return size;
+    }
+
+    private static String getExt(String url, String ext) {
+        String path = UrlUtil.path(Uri.parse(url)).toLowerCase();
+        int index = path.lastIndexOf('.');
+        String value = index == -1 ? "" : path.substring(index);
+        return value.length() < 2 || value.length() > 5 || value.contains("/") ? ext : value;
+    }
+
+    private synchronized void load() {
+        JsonElement element = Json.parse(Path.read(file));
+        if (!element.isJsonArray()) return;
+        for (JsonElement item : element.getAsJsonArray()) {
+            DownloadTask task = DownloadTask.objectFrom(item.toString());
+            if (task.getState() == DownloadTask.State.RUNNING) task.setState(DownloadTask.State.WAIT);
+            tasks.put(task.getId(), task);
+        }
+    }
+
+    private synchronized void checkpoint() {
+        if (System.currentTimeMillis() - saved >= CHECKPOINT) save();
+    }
+
+    private synchronized void save() {
+        saved = System.currentTimeMillis();
+        JsonArray array = new JsonArray();
+        for (DownloadTask task : tasks.values()) array.add(Json.parse(task.toString()));
+        String text = array.toString();
+        App.execute(() -> Path.write(file, text.getBytes()));
+    }
+
+    private static class QuotaException extends IOException {
+
+        QuotaException(String message) {
+            super(message);
+        }
+    }
+
+    private static class RuntimeIOException extends RuntimeException {
+
+        RuntimeIOException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package top.cywin.onetv.movie.download;
+
+import android.text.TextUtils;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.catvod.utils.Path;
+import com.google.gson.JsonObject;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DownloadTask {
+
+    public enum State {
+        WAIT, RUNNING, PAUSE, DONE, ERROR
+    }
+
+    @SerializedName("id")
+    private String id;
+    @SerializedName("name")
+    private String name;
+    @SerializedName("url")
+    private String url;
+    @SerializedName("headers")
+    private Map<String, String> headers;
+    @SerializedName("hls")
+    private boolean hls;
+    @SerializedName("state")
+    private State state;
+    @SerializedName("msg")
+    private String msg;
+    @SerializedName("file")
+    private String file;
+    @SerializedName("length")
+    private long length;
+    @SerializedName("items")
+    private List<String> items;
+    @SerializedName("finished")
+    private boolean[] finished;
+    @SerializedName("time")
+    private long time;
+
+    private transient long retryAt;
+    private transient int retry;
+
+    public static DownloadTask objectFrom(String str) {
+        return App.gson().fromJson(str, DownloadTask.class);
+    }
+
+    public DownloadTask(String id, String name, String url, Map<String, String> headers) {
+        this.id = id;
+        this.name = name;
+        this.url = url;
+        this.headers = headers;
+        this.state = State.WAIT;
+        this.time = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return TextUtils.isEmpty(name) ? "" : name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers == null ? new HashMap<>() : new HashMap<>(headers);
+    }
+
+    public boolean isHls() {
+        return hls;
+    }
+
+    public void setHls(boolean hls) {
+        this.hls = hls;
+    }
+
+    public State getState() {
+        return state == null ? State.WAIT : state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+        if (state != State.ERROR) this.msg = null;
+    }
+
+    public void setError(String msg) {
+        this.state = State.ERROR;
+        this.msg = msg;
+    }
+
+    public String getFile() {
+        return TextUtils.isEmpty(file) ? "" : file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public List<String> getItems() {
+        return items == null ? new ArrayList<>() : items;
+    }
+
+    public void setItems(List<String> items) {
+        this.items = items;
+    }
+
+    public boolean[] getFinished() {
+        return finished == null ? new boolean[0] : finished;
+    }
+
+    public void setFinished(boolean[] finished) {
+        this.finished = finished;
+    }
+
+    public synchronized void finish(int index) {
+        finished[index] = true;
+    }
+
+    public synchronized int getProgress() {
+        if (finished == null || finished.length == 0) return getState() == State.DONE ? 100 : 0;
+        int count = 0;
+        for (boolean item : finished) if (item) count++;
+        return count * 100 / finished.length;
+    }
+
+    public File getDir() {
+        return Path.download(id);
+    }
+
+    public long getRetryAt() {
+        return retryAt;
+    }
+
+    public int retry(long now, long backoff) {
+        retryAt = now + backoff * (1L << Math.min(retry, 6));
+        return ++retry;
+    }
+
+    public void resetRetry() {
+        retryAt = 0;
+        retry = 0;
+    }
+
+    public JsonObject toJson() {
+        JsonObject object = new JsonObject();
+        object.addProperty("id", id);
+        object.addProperty("name", getName());
+        object.addProperty("url", url);
+        object.addProperty("state", getState().name().toLowerCase());
+        object.addProperty("progress", getProgress());
+        object.addProperty("time", time);
+        if (msg != null) object.addProperty("msg", msg);
+        return object;
+    }
+
+    @Override
+    public String toString() {
+        return App.gson().toJson(this);
+    }
+}
@@ -7,6 +7,7 @@ public class PlayerEvent {
     public static final int PREPARE = 0;
     public static final int TRACK = 21;
     public static final int SIZE = 11;
+    public static final int REFRESH = 31;
 
     private final String tag;
     private final int state;
@@ -23,6 +24,10 @@ public class PlayerEvent {
         EventBus.getDefault().post(new PlayerEvent(tag, SIZE));
     }
 
+    public static void refresh(String tag) {
+        EventBus.getDefault().post(new PlayerEvent(tag, REFRESH));
+    }
+
     public static void state(String tag, int state) {
         EventBus.getDefault().post(new PlayerEvent(tag, state));
     }
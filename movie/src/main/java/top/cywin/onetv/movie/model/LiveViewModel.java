@@ -5,6 +5,7 @@ import androidx.lifecycle.ViewModel;
 
 import top.cywin.onetv.movie.Constants;
 import top.cywin.onetv.movie.R;
+import top.cywin.onetv.movie.Setting;
 import top.cywin.onetv.movie.api.EpgParser;
 import top.cywin.onetv.movie.api.LiveParser;
 import top.cywin.onetv.movie.api.config.LiveConfig;
@@ -14,6 +15,8 @@ import top.cywin.onetv.movie.bean.EpgData;
 import top.cywin.onetv.movie.bean.Group;
 import top.cywin.onetv.movie.bean.Live;
 import top.cywin.onetv.movie.exception.ExtractException;
+import top.cywin.onetv.movie.player.LineRacer;
+import top.cywin.onetv.movie.player.P2pManager;
 import top.cywin.onetv.movie.player.Source;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 
@@ -63,6 +66,7 @@ public class LiveViewModel extends ViewModel {
     public void getLive(Live item) {
         execute(LIVE, () -> {
             LiveParser.start(item.recent());
+            P2pManager.get().prewarm(item);
             setTimeZone(item);
             verify(item);
             return item;
@@ -90,6 +94,7 @@ public class LiveViewModel extends ViewModel {
         execute(URL, () -> {
             item.setMsg(null);
             Source.get().stop();
+            if (Setting.isRace()) LineRacer.get().race(item);
             item.setUrl(Source.get().fetch(item));
             return item;
         });
@@ -1,5 +1,6 @@
 package top.cywin.onetv.movie.model;
 
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import androidx.collection.ArrayMap;
@@ -17,11 +18,15 @@ import top.cywin.onetv.movie.bean.Site;
 import top.cywin.onetv.movie.bean.Url;
 import top.cywin.onetv.movie.bean.Vod;
 import top.cywin.onetv.movie.exception.ExtractException;
+import top.cywin.onetv.movie.player.PlayCache;
+import top.cywin.onetv.movie.player.QoeMetrics;
+import top.cywin.onetv.movie.player.Preloader;
 import top.cywin.onetv.movie.player.Source;
 import top.cywin.onetv.movie.utils.ResUtil;
 import top.cywin.onetv.movie.utils.Sniffer;
 import top.cywin.onetv.movie.catvod.crawler.Spider;
 import top.cywin.onetv.movie.catvod.crawler.SpiderDebug;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 import top.cywin.onetv.movie.catvod.utils.Trans;
 import top.cywin.onetv.movie.catvod.utils.Util;
@@ -88,7 +93,7 @@ public class SiteViewModel extends ViewModel {
                 SpiderDebug.log(homeContent);
                 return Result.fromJson(homeContent);
             } else {
-                Response response = OkHttp.newCall(site.getApi(), site.getHeaders()).execute();
+                Response response = OkHttp.newCall(OkHttp.client(OkCache.Type.API), site.getApi(), site.getHeaders()).execute();
                 String homeContent = response.body().string();
                 SpiderDebug.log(homeContent);
                 response.close();
@@ -159,50 +164,58 @@ public class SiteViewModel extends ViewModel {
     public void playerContent(String key, String flag, String id) {
         execute(player, () -> {
             Source.get().stop();
-            Site site = VodConfig.get().getSite(key);
-            if (site.getType() == 3) {
-                Spider spider = site.recent().spider();
-                String playerContent = spider.playerContent(flag, id, VodConfig.get().getFlags());
-                SpiderDebug.log(playerContent);
-                Result result = Result.fromJson(playerContent);
-                if (result.getFlag().isEmpty()) result.setFlag(flag);
-                result.setUrl(Source.get().fetch(result));
-                result.setHeader(site.getHeader());
-                result.setKey(key);
-                return result;
-            } else if (site.getType() == 4) {
-                ArrayMap<String, String> params = new ArrayMap<>();
-                params.put("play", id);
-                params.put("flag", flag);
-                String playerContent = call(site, params);
-                SpiderDebug.log(playerContent);
-                Result result = Result.fromJson(playerContent);
-                if (result.getFlag().isEmpty()) result.setFlag(flag);
-                result.setUrl(Source.get().fetch(result));
-                result.setHeader(site.getHeader());
-                return result;
-            } else if (site.isEmpty() && "push_agent".equals(key)) {
-                Result result = new Result();
-                result.setParse(0);
-                result.setFlag(flag);
-                result.setUrl(Url.create().add(id));
-                result.setUrl(Source.get().fetch(result));
-                return result;
-            } else {
-                Url url = Url.create().add(id);
-                Result result = new Result();
-                result.setUrl(url);
-                result.setFlag(flag);
-                result.setHeader(site.getHeader());
-                result.setPlayUrl(site.getPlayUrl());
-                result.setParse(Sniffer.isVideoFormat(url.v()) && result.getPlayUrl().isEmpty() ? 0 : 1);
-                result.setUrl(Source.get().fetch(result));
-                SpiderDebug.log(result.toString());
-                return result;
-            }
+            long start = SystemClock.elapsedRealtime();
+            Result result = Preloader.get().take(key, flag, id);
+            if (result != null) PlayCache.get().put(key, flag, id, result);
+            if (result == null) result = PlayCache.get().get(key, flag, id);
+            if (result == null) PlayCache.get().put(key, flag, id, result = getPlayer(key, flag, id));
+            result.setUrl(Source.get().fetch(result));
+            PlayCache.get().resolved(key, flag, id, result.getRealUrl());
+            QoeMetrics.get().resolved(key, result.getFlag(), SystemClock.elapsedRealtime() - start);
+            SpiderDebug.log(result.toString());
+            return result;
         });
     }
 
+    public static Result getPlayer(String key, String flag, String id) throws Exception {
+        Site site = VodConfig.get().getSite(key);
+        if (site.getType() == 3) {
+            Spider spider = site.recent().spider();
+            String playerContent = spider.playerContent(flag, id, VodConfig.get().getFlags());
+            SpiderDebug.log(playerContent);
+            Result result = Result.fromJson(playerContent);
+            if (result.getFlag().isEmpty()) result.setFlag(flag);
+            result.setHeader(site.getHeader());
+            result.setKey(key);
+            return result;
+        } else if (site.getType() == 4) {
+            ArrayMap<String, String> params = new ArrayMap<>();
+            params.put("play", id);
+            params.put("flag", flag);
+            String playerContent = call(site, params);
+            SpiderDebug.log(playerContent);
+            Result result = Result.fromJson(playerContent);
+            if (result.getFlag().isEmpty()) result.setFlag(flag);
+            result.setHeader(site.getHeader());
+            return result;
+        } else if (site.isEmpty() && "push_agent".equals(key)) {
+            Result result = new Result();
+            result.setParse(0);
+            result.setFlag(flag);
+            result.setUrl(Url.create().add(id));
+            return result;
+        } else {
+            Url url = Url.create().add(id);
+            Result result = new Result();
+            result.setUrl(url);
+            result.setFlag(flag);
+            result.setHeader(site.getHeader());
+            result.setPlayUrl(site.getPlayUrl());
+            result.setParse(Sniffer.isVideoFormat(url.v()) && result.getPlayUrl().isEmpty() ? 0 : 1);
+            return result;
+        }
+    }
+
     public void action(String key, String action) {
         execute(this.action, () -> {
             Site site = VodConfig.get().getSite(key);
@@ -253,9 +266,9 @@ public class SiteViewModel extends ViewModel {
         });
     }
 
-    private String call(Site site, ArrayMap<String, String> params) throws IOException {
+    private static String call(Site site, ArrayMap<String, String> params) throws IOException {
         if (!site.getExt().isEmpty()) params.put("extend", site.getExt());
-        Call get = OkHttp.newCall(site.getApi(), site.getHeaders(), params);
+        Call get = OkHttp.newCall(OkHttp.client(OkCache.Type.API), site.getApi(), site.getHeaders(), params);
         Call post = OkHttp.newCall(site.getApi(), site.getHeaders(), OkHttp.toBody(params));
         Response response = (site.getExt().length() <= 1000 ? get : post).execute();
         String result = response.body().string();
@@ -272,7 +285,7 @@ public class SiteViewModel extends ViewModel {
         ArrayMap<String, String> params = new ArrayMap<>();
         params.put("ac", site.getType() == 0 ? "videolist" : "detail");
         params.put("ids", TextUtils.join(",", ids));
-        Response response = OkHttp.newCall(site.getApi(), site.getHeaders(), params).execute();
+        Response response = OkHttp.newCall(OkHttp.client(OkCache.Type.API), site.getApi(), site.getHeaders(), params).execute();
         result.setList(Result.fromType(site.getType(), response.body().string()).getList());
         response.close();
         return result;
@@ -415,6 +428,14 @@ public class SiteViewModel extends ViewModel {
         }
     }
 
+    /**
+     * 预解析下一集 - Compose UI调用入口
+     */
+    public void preload(String key, String url, String flag, long position, long duration) {
+        if (TextUtils.isEmpty(key)) return;
+        Preloader.get().check(key, flag, url, position, duration);
+    }
+
     @Override
     protected void onCleared() {
         if (executor != null) executor.shutdownNow();
@@ -0,0 +1,219 @@
+package top.cywin.onetv.movie.player;
+
+import top.cywin.onetv.movie.Constants;
+import top.cywin.onetv.movie.bean.Channel;
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Prefers;
+import top.cywin.onetv.movie.utils.UrlUtil;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Headers;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+/**
+ * Probes the first {@link #COUNT} lines of a channel in parallel and switches to the first one that
+ * answers. Lines keep their probe order afterwards so {@link #next} can fail over without waiting
+ * for a timeout, and the winner is remembered per channel across sessions.
+ */
+public class LineRacer {
+
+    private static final String KEY = "live_line";
+    private static final String TAG = "race";
+    private static final int COUNT = 3;
+    private static final int SIZE = 512;
+    private static final long PROBE = 1024;
+
+    private final Map<String, List<String>> ranks;
+    private final ExecutorService executor;
+    private Map<String, String> winners;
+
+    private static class Loader {
+        static volatile LineRacer INSTANCE = new LineRacer();
+    }
+
+    public static LineRacer get() {
+        return Loader.INSTANCE;
+    }
+
+    private LineRacer() {
+        ranks = new ConcurrentHashMap<>();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    private static String key(Channel item) {
+        return item.getName() + "#" + item.getNumber();
+    }
+
+    private static String url(String line) {
+        return line.split("\\$")[0];
+    }
+
+    public void race(Channel item) {
+        if (item.getUrls().size() <= 1) return;
+        OkHttp.cancel(TAG);
+        List<String> lines = order(item);
+        List<String> probes = new ArrayList<>();
+        for (String line : lines) if (probes.size() < COUNT && isProbe(url(line))) probes.add(line);
+        if (probes.isEmpty()) {
+            item.setLine(lines.get(0));
+            return;
+        }
+        Race race = new Race(lines);
+        ranks.put(key(item), race.rank);
+        Map<String, String> headers = item.getHeaders();
+        for (String line : probes) race.futures.put(race.service.submit(() -> probe(line, headers)), line);
+        String winner = race.await(System.currentTimeMillis() + Constants.TIMEOUT_RACE);
+        item.setLine(winner == null ? lines.get(0) : winner);
+        if (winner != null) remember(item, winner);
+        if (!race.futures.isEmpty()) executor.execute(race::finish);
+    }
+
+    public boolean next(Channel item) {
+        List<String> rank = ranks.get(key(item));
+        if (rank == null) return false;
+        synchronized (rank) {
+            int index = rank.indexOf(item.getUrls().get(item.getLine()));
+            if (index == -1 || index + 1 >= rank.size()) return false;
+            item.setLine(rank.get(index + 1));
+            return true;
+        }
+    }
+
+    public boolean failover(Channel item) {
+        if (next(item)) return true;
+        if (item.isOnly() || item.isLast()) return false;
+        item.nextLine();
+        return true;
+    }
+
+    private List<String> order(Channel item) {
+        List<String> lines = new ArrayList<>(item.getUrls());
+        String winner = getWinners().get(key(item));
+        String current = item.getUrls().get(item.getLine());
+        if (lines.remove(current)) lines.add(0, current);
+        if (winner != null && lines.remove(winner)) lines.add(0, winner);
+        return lines;
+    }
+
+    private boolean isProbe(String url) {
+        String scheme = UrlUtil.scheme(url);
+        return ("http".equals(scheme) || "https".equals(scheme)) && !Source.get().match(url);
+    }
+
+    private String probe(String line, Map<String, String> headers) throws IOException {
+        String url = url(line);
+        String body = read(url, headers);
+        if (!body.startsWith("#EXTM3U")) return line;
+        String segment = segment(url, body);
+        if (segment != null && segment.contains(".m3u8")) segment = segment(segment, read(segment, headers));
+        if (segment != null) read(segment, headers);
+        return line;
+    }
+
+    private String segment(String url, String playlist) {
+        for (String line : playlist.split("\n")) if (!line.trim().isEmpty() && !line.startsWith("#")) return UrlUtil.resolve(url, line.trim());
+        return null;
+    }
+
+    private String read(String url, Map<String, String> headers) throws IOException {
+        Request request = new Request.Builder().url(url).headers(Headers.of(headers)).tag(TAG).build();
+        Call call = OkHttp.client(Constants.TIMEOUT_RACE).newCall(request);
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) throw new IOException(String.valueOf(response.code()));
+            BufferedSource source = response.body().source();
+            String type = String.valueOf(response.body().contentType());
+            if (!type.contains("mpegurl") && !url.contains(".m3u8")) {
+                source.require(1);
+                return "";
+            }
+            source.request(PROBE * 64);
+            return source.getBuffer().readUtf8();
+        }
+    }
+
+    private synchronized Map<String, String> getWinners() {
+        if (winners != null) return winners;
+        winners = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > SIZE;
+            }
+        };
+        winners.putAll(Json.toMap(Json.parse(Prefers.getString(KEY, "{}"))));
+        return winners;
+    }
+
+    private synchronized void remember(Channel item, String line) {
+        if (line.equals(getWinners().put(key(item), line))) return;
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, String> entry : getWinners().entrySet()) object.addProperty(entry.getKey(), entry.getValue());
+        Prefers.put(KEY, object.toString());
+    }
+
+    private class Race {
+
+        private final CompletionService<String> service;
+        private final Map<Future<String>, String> futures;
+        private final List<String> rank;
+        private int won;
+
+        Race(List<String> lines) {
+            service = new ExecutorCompletionService<>(executor);
+            futures = new ConcurrentHashMap<>();
+            rank = new ArrayList<>(lines);
+        }
+
+        String await(long deadline) {
+            while (!futures.isEmpty()) {
+                try {
+                    long remaining = deadline - System.currentTimeMillis();
+                    Future<String> future = remaining > 0 ? service.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                    if (future == null) return null;
+                    String line = futures.remove(future);
+                    if (onDone(future, line)) return line;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        void finish() {
+            long deadline = System.currentTimeMillis() + Constants.TIMEOUT_RACE * 2;
+            while (!futures.isEmpty() && System.currentTimeMillis() < deadline) await(deadline);
+        }
+
+        private boolean onDone(Future<String> future, String line) {
+            boolean ok;
+            try {
+                ok = future.get() != null;
+            } catch (Exception e) {
+                ok = false;
+            }
+            synchronized (rank) {
+                rank.remove(line);
+                if (ok) rank.add(won++, line);
+                else rank.add(line);
+            }
+            return ok;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package top.cywin.onetv.movie.player;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.ServiceConnection;
+import android.net.Uri;
+import android.os.IBinder;
+import android.text.TextUtils;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.bean.Channel;
+import top.cywin.onetv.movie.bean.Core;
+import top.cywin.onetv.movie.bean.Group;
+import top.cywin.onetv.movie.bean.Live;
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.utils.Path;
+import top.cywin.onetv.movie.exception.ExtractException;
+import top.cywin.onetv.movie.forcetech.Util;
+import top.cywin.onetv.movie.tvbus.engine.Listener;
+import top.cywin.onetv.movie.tvbus.engine.TVCore;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the P2P engines used by live channels. Force services are bound and the TVBus core is loaded
+ * in the background as soon as a live config references them, and extractors wait on the returned
+ * futures instead of polling, so the first zap to a P2P channel does not pay for the startup.
+ */
+public class P2pManager implements ServiceConnection, Listener {
+
+    private static final Pattern FORCE = Pattern.compile("(?i)(p[2-9]p|mitv)");
+    private static final long TIMEOUT = 15_000;
+
+    private final Map<String, CompletableFuture<Void>> services;
+    private volatile CompletableFuture<TVCore> tvbus;
+    private volatile Listener listener;
+    private volatile Core core;
+
+    private static class Loader {
+        static volatile P2pManager INSTANCE = new P2pManager();
+    }
+
+    public static P2pManager get() {
+        return Loader.INSTANCE;
+    }
+
+    private P2pManager() {
+        services = new ConcurrentHashMap<>();
+    }
+
+    public static boolean isForce(String scheme) {
+        return FORCE.matcher(scheme).find();
+    }
+
+    public void prewarm(Live live) {
+        Set<String> schemes = new HashSet<>();
+        for (Group group : live.getGroups()) for (Channel channel : group.getChannel()) for (String url : channel.getUrls()) schemes.add(scheme(url));
+        for (String scheme : schemes) if (isForce(scheme)) force(scheme);
+        if (schemes.contains("tvbus") && !live.getCore().getSo().isEmpty()) tvbus(live.getCore());
+    }
+
+    private static String scheme(String url) {
+        int index = url.indexOf("://");
+        return index <= 0 ? "" : url.substring(0, index);
+    }
+
+    public synchronized CompletableFuture<Void> force(String scheme) {
+        String key = Util.scheme(scheme + "://");
+        if (services.containsKey(key)) return services.get(key);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        services.put(key, future);
+        App.post(() -> {
+            try {
+                if (!App.get().bindService(Util.intent(App.get(), key), this, Context.BIND_AUTO_CREATE)) fail(key, new ExtractException(key));
+            } catch (Exception e) {
+                fail(key, e);
+            }
+        });
+        return future;
+    }
+
+    private void fail(String key, Exception e) {
+        CompletableFuture<Void> future = services.remove(key);
+        if (future != null) future.completeExceptionally(e);
+    }
+
+    public boolean isChanged(Core core) {
+        return this.core != null && !this.core.equals(core);
+    }
+
+    public synchronized CompletableFuture<TVCore> tvbus(Core core) {
+        if (tvbus != null) return tvbus;
+        CompletableFuture<TVCore> future = tvbus = new CompletableFuture<>();
+        this.core = core;
+        App.execute(() -> {
+            try {
+                App.get().setHook(core.getHook());
+                future.complete(new TVCore(getSo(core.getSo())).listener(this).auth(core.getAuth()).name(core.getName()).pass(core.getPass()).domain(core.getDomain()).broker(core.getBroker()).serv(0).play(8902).mode(1).init());
+            } catch (Throwable e) {
+                reset(future);
+                future.completeExceptionally(e);
+            } finally {
+                App.get().setHook(null);
+            }
+        });
+        return future;
+    }
+
+    private synchronized void reset(CompletableFuture<TVCore> future) {
+        if (tvbus != future) return;
+        tvbus = null;
+        core = null;
+    }
+
+    private String getSo(String url) {
+        String name = Uri.parse(url).getLastPathSegment();
+        if (TextUtils.isEmpty(name)) name = "tvcore.so";
+        File file = new File(Path.so(), name);
+        if (file.length() < 10240) Path.write(file, OkHttp.bytes(url));
+        return file.getAbsolutePath();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get(Math.min(TIMEOUT, Scheduler.remaining()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (TimeoutException e) {
+            throw new ExtractException("timeout");
+        }
+    }
+
+    public void unbind() {
+        try {
+            if (!services.isEmpty()) App.get().unbindService(this);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            services.clear();
+        }
+    }
+
+    public synchronized void quit() {
+        CompletableFuture<TVCore> future = tvbus;
+        tvbus = null;
+        core = null;
+        if (future != null) future.thenAccept(tvcore -> tvcore.quit());
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        CompletableFuture<Void> future = services.get(Util.trans(name));
+        if (future != null) future.complete(null);
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        services.remove(Util.trans(name));
+    }
+
+    @Override
+    public void onInited(String result) {
+        if (listener != null) listener.onInited(result);
+    }
+
+    @Override
+    public void onStart(String result) {
+        if (listener != null) listener.onStart(result);
+    }
+
+    @Override
+    public void onPrepared(String result) {
+        if (listener != null) listener.onPrepared(result);
+    }
+
+    @Override
+    public void onInfo(String result) {
+        if (listener != null) listener.onInfo(result);
+    }
+
+    @Override
+    public void onStop(String result) {
+        if (listener != null) listener.onStop(result);
+    }
+
+    @Override
+    public void onQuit(String result) {
+        if (listener != null) listener.onQuit(result);
+    }
+}
@@ -28,38 +28,68 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Call;
 import okhttp3.Headers;
+import okhttp3.Request;
 
 public class ParseJob implements ParseCallback {
 
+    private static final int RACE = 3;
+
     private final List<CustomWebView> webViews;
-    private ExecutorService executor;
-    private ExecutorService infinite;
+    private final String tag;
+    private volatile boolean done;
+    private Scheduler.Batch<Boolean> batch;
     private ParseCallback callback;
+    private List<Parse> webs;
     private Parse parse;
+    private String webUrl;
+    private String key;
+    private String flag;
+    private long start;
 
     public static ParseJob create(ParseCallback callback) {
         return new ParseJob(callback);
     }
 
     public ParseJob(ParseCallback callback) {
-        this.executor = Executors.newFixedThreadPool(2);
-        this.infinite = Executors.newCachedThreadPool();
         this.webViews = new ArrayList<>();
+        this.tag = "parse@" + hashCode();
         this.callback = callback;
     }
 
     public ParseJob start(Result result, boolean useParse) {
+        start = System.currentTimeMillis();
+        key = String.valueOf(result.getKey());
+        flag = result.getFlag();
+        webUrl = result.getUrl().v();
         setParse(result, useParse);
-        execute(result);
+        if (!fromCache()) execute(result);
         return this;
     }
 
+    private boolean fromCache() {
+        Result cache = PlayCache.get().get(key, flag, "parse:" + webUrl);
+        if (cache == null) return false;
+        ParseCallback callback = this.callback;
+        App.post(() -> {
+            if (callback != null) callback.onParseSuccess(cache.getHeaders(), cache.getUrl().v(), cache.getJxFrom());
+        });
+        return true;
+    }
+
+    private void putCache(Map<String, String> headers, String url, String from) {
+        Result result = new Result();
+        result.setUrl(url);
+        result.setHeader(Json.toObject(headers));
+        result.setJxFrom(from);
+        PlayCache.get().put(key, flag, "parse:" + webUrl, result);
+    }
+
     private void setParse(Result result, boolean useParse) {
         if (useParse) parse = VodConfig.get().getParse();
         if (result.getPlayUrl().startsWith("json:")) parse = Parse.get(1, result.getPlayUrl().substring(5));
@@ -76,22 +106,19 @@ public class ParseJob implements ParseCallback {
     }
 
     private void execute(Result result) {
-        executor.execute(() -> {
-            try {
-                executor.submit(getTask(result)).get(Constants.TIMEOUT_PARSE_DEF, TimeUnit.MILLISECONDS);
-            } catch (Throwable e) {
-                onParseError();
-            }
-        });
+        batch = Scheduler.get().batch(Constants.TIMEOUT_PARSE_DEF);
+        batch.submit(getTask(result));
+        batch.expire(this::onParseError);
     }
 
-    private Runnable getTask(Result result) {
+    private Callable<Boolean> getTask(Result result) {
         return () -> {
             try {
                 doInBackground(result.getKey(), result.getUrl().v(), result.getFlag());
             } catch (Throwable e) {
                 onParseError();
             }
+            return true;
         };
     }
 
@@ -115,13 +142,22 @@ public class ParseJob implements ParseCallback {
         }
     }
 
-    private void jsonParse(Parse item, String webUrl, boolean error) throws Exception {
-        String body = OkHttp.newCall(item.getUrl() + webUrl, Headers.of(item.getHeaders())).execute().body().string();
+    private boolean jsonParse(Parse item, String webUrl, boolean error) throws Exception {
+        long time = System.currentTimeMillis();
+        Request request = new Request.Builder().url(item.getUrl() + webUrl).headers(Headers.of(item.getHeaders())).tag(tag).build();
+        Call call = OkHttp.client().newCall(request);
+        if (Scheduler.remaining() != Long.MAX_VALUE) call.timeout().timeout(Scheduler.remaining(), TimeUnit.MILLISECONDS);
+        String body = call.execute().body().string();
         JsonObject object = Json.parse(body).getAsJsonObject();
         String url = Json.safeString(object, "url");
         JsonObject data = object.getAsJsonObject("data");
         if (url.isEmpty()) url = Json.safeString(data, "url");
+        boolean success = url.length() > 40;
+        if (success) done = true;
+        if (success) ParseRank.get().success(key, flag, item.getName(), System.currentTimeMillis() - time);
+        else ParseRank.get().failure(key, flag, item.getName());
         checkResult(getHeader(object), url, item.getName(), error);
+        return success;
     }
 
     private void jsonExtend(String webUrl) throws Throwable {
@@ -137,23 +173,47 @@ public class ParseJob implements ParseCallback {
     }
 
     private void godParse(String webUrl, String flag) throws Exception {
-        List<Parse> json = VodConfig.get().getParses(1, flag);
-        List<Parse> webs = VodConfig.get().getParses(0, flag);
-        int count = json.size() + (webs.isEmpty() ? 0 : 1);
-        CountDownLatch latch = new CountDownLatch(count);
-        for (Parse item : json) infinite.execute(() -> jsonParse(latch, item, webUrl));
+        List<Parse> json = ParseRank.get().sort(key, flag, VodConfig.get().getParses(1, flag));
+        webs = ParseRank.get().sort(key, flag, VodConfig.get().getParses(0, flag));
         if (!webs.isEmpty()) startWeb(webs, webUrl);
-        latch.await();
-        onParseError();
+        if (race(json, webUrl)) return;
+        if (webs.isEmpty()) onParseError();
+        else if (batch != null) batch.hold();
     }
 
-    private void jsonParse(CountDownLatch latch, Parse item, String webUrl) {
+    private boolean race(List<Parse> items, String webUrl) throws InterruptedException {
+        Scheduler.Batch<Boolean> race = Scheduler.get().batch(Constants.TIMEOUT_PARSE_DEF);
+        int next = 0;
+        for (; next < items.size() && next < RACE; next++) submit(race, items.get(next), webUrl);
+        Future<Boolean> future;
+        while ((future = race.take()) != null) {
+            if (isSuccess(future)) {
+                race.cancel();
+                OkHttp.cancel(tag);
+                return true;
+            }
+            if (next < items.size()) submit(race, items.get(next++), webUrl);
+        }
+        race.cancel();
+        return false;
+    }
+
+    private void submit(Scheduler.Batch<Boolean> race, Parse item, String webUrl) {
+        race.submit(() -> {
+            try {
+                return jsonParse(item, webUrl, false);
+            } catch (Exception e) {
+                if (!done) ParseRank.get().failure(key, flag, item.getName());
+                return false;
+            }
+        });
+    }
+
+    private boolean isSuccess(Future<Boolean> future) {
         try {
-            jsonParse(item, webUrl, false);
+            return future.get();
         } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            latch.countDown();
+            return false;
         }
     }
 
@@ -205,16 +265,32 @@ public class ParseJob implements ParseCallback {
         return headers;
     }
 
+    private String getFrom(Map<String, String> headers) {
+        String referer = "";
+        for (Map.Entry<String, String> entry : headers.entrySet()) if (entry.getKey().equalsIgnoreCase(HttpHeaders.REFERER)) referer = entry.getValue();
+        if (referer.isEmpty() || webs == null) return "";
+        for (Parse item : webs) if (referer.startsWith(item.getUrl())) return item.getName();
+        for (Parse item : webs) if (UrlUtil.host(referer).equals(UrlUtil.host(item.getUrl()))) return item.getName();
+        return "";
+    }
+
     @Override
     public void onParseSuccess(Map<String, String> headers, String url, String from) {
+        boolean web = parse.getType() == 0 || (parse.getType() == 4 && TextUtils.isEmpty(from));
+        String name = parse.getType() == 4 && TextUtils.isEmpty(from) ? getFrom(headers) : from;
+        if (web) ParseRank.get().success(key, flag, name, System.currentTimeMillis() - start);
+        done = true;
+        putCache(headers, url, name);
         App.post(() -> {
-            if (callback != null) callback.onParseSuccess(headers, url, from);
+            if (callback != null) callback.onParseSuccess(headers, url, name);
             stop();
         });
     }
 
     @Override
     public void onParseError() {
+        if (parse.getType() == 0 && !done) ParseRank.get().failure(key, flag, parse.getName());
+        if (parse.getType() == 4 && !done && webs != null) for (Parse item : webs) ParseRank.get().failure(key, flag, item.getName());
         App.post(() -> {
             if (callback != null) callback.onParseError();
             stop();
@@ -227,10 +303,9 @@ public class ParseJob implements ParseCallback {
     }
 
     public void stop() {
-        if (executor != null) executor.shutdownNow();
-        if (infinite != null) infinite.shutdownNow();
-        infinite = null;
-        executor = null;
+        OkHttp.cancel(tag);
+        if (batch != null) batch.cancel();
+        batch = null;
         callback = null;
         stopWeb();
     }
@@ -0,0 +1,151 @@
+package top.cywin.onetv.movie.player;
+
+import top.cywin.onetv.movie.bean.Parse;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Prefers;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Success rate and latency per parser, kept per site and flag with the flag alone as fallback.
+ * Parsers are ordered by smoothed success rate divided by expected latency, ties keep config order.
+ * Counts are halved past {@link #WINDOW} samples so the ranking follows parsers that go bad.
+ */
+public class ParseRank {
+
+    private static final String KEY = "parse_rank";
+    private static final long LATENCY = 3000;
+    private static final float ALPHA = 0.3f;
+    private static final int SIZE = 256;
+    private static final int WINDOW = 50;
+
+    private final Map<String, Map<String, Stat>> scopes;
+
+    private static class Loader {
+        static volatile ParseRank INSTANCE = new ParseRank();
+    }
+
+    public static ParseRank get() {
+        return Loader.INSTANCE;
+    }
+
+    private ParseRank() {
+        scopes = new LinkedHashMap<String, Map<String, Stat>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Stat>> eldest) {
+                return size() > SIZE;
+            }
+        };
+        load();
+    }
+
+    private static String scope(String site, String flag) {
+        return site + "/" + flag;
+    }
+
+    public synchronized List<Parse> sort(String site, String flag, List<Parse> items) {
+        Map<String, Double> scores = new HashMap<>();
+        for (Parse item : items) scores.put(item.getName(), score(site, flag, item.getName()));
+        List<Parse> sorted = new ArrayList<>(items);
+        sorted.sort((a, b) -> Double.compare(scores.get(b.getName()), scores.get(a.getName())));
+        return sorted;
+    }
+
+    public synchronized void success(String site, String flag, String name, long latency) {
+        if (name == null || name.isEmpty()) return;
+        stat(scope(site, flag), name).success(latency);
+        stat(flag, name).success(latency);
+        save();
+    }
+
+    public synchronized void failure(String site, String flag, String name) {
+        if (name == null || name.isEmpty()) return;
+        stat(scope(site, flag), name).failure();
+        stat(flag, name).failure();
+        save();
+    }
+
+    private double score(String site, String flag, String name) {
+        Map<String, Stat> stats = scopes.get(scope(site, flag));
+        Stat stat = stats == null ? null : stats.get(name);
+        if (stat == null && (stats = scopes.get(flag)) != null) stat = stats.get(name);
+        if (stat == null) stat = new Stat();
+        return (stat.success + 1.0) / (stat.success + stat.failure + 2.0) / (1.0 + stat.latency / (double) LATENCY);
+    }
+
+    private Stat stat(String scope, String name) {
+        Map<String, Stat> stats = scopes.get(scope);
+        if (stats == null) scopes.put(scope, stats = new HashMap<>());
+        Stat stat = stats.get(name);
+        if (stat == null) stats.put(name, stat = new Stat());
+        return stat;
+    }
+
+    private void load() {
+        JsonObject object = Json.safeObject(Json.parse(Prefers.getString(KEY, "{}")));
+        for (Map.Entry<String, JsonElement> scope : object.entrySet()) {
+            Map<String, Stat> stats = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : Json.safeObject(scope.getValue()).entrySet()) stats.put(entry.getKey(), Stat.from(entry.getValue()));
+            scopes.put(scope.getKey(), stats);
+        }
+    }
+
+    private void save() {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, Map<String, Stat>> scope : scopes.entrySet()) {
+            JsonObject stats = new JsonObject();
+            for (Map.Entry<String, Stat> entry : scope.getValue().entrySet()) stats.add(entry.getKey(), entry.getValue().toJson());
+            object.add(scope.getKey(), stats);
+        }
+        Prefers.put(KEY, object.toString());
+    }
+
+    private static class Stat {
+
+        private int success;
+        private int failure;
+        private long latency = LATENCY;
+
+        static Stat from(JsonElement element) {
+            Stat stat = new Stat();
+            if (!element.isJsonArray() || element.getAsJsonArray().size() < 3) return stat;
+            JsonArray array = element.getAsJsonArray();
+            stat.success = array.get(0).getAsInt();
+            stat.failure = array.get(1).getAsInt();
+            stat.latency = array.get(2).getAsLong();
+            return stat;
+        }
+
+        void success(long latency) {
+            this.success++;
+            this.latency = (long) (ALPHA * latency + (1 - ALPHA) * this.latency);
+            decay();
+        }
+
+        void failure() {
+            this.failure++;
+            decay();
+        }
+
+        private void decay() {
+            if (success + failure <= WINDOW) return;
+            success /= 2;
+            failure /= 2;
+        }
+
+        JsonArray toJson() {
+            JsonArray array = new JsonArray();
+            array.add(success);
+            array.add(failure);
+            array.add(latency);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package top.cywin.onetv.movie.player;
+
+import android.net.Uri;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.Setting;
+import top.cywin.onetv.movie.bean.Result;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Path;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolved play results keyed by site, flag and episode id, persisted so resume skips resolution.
+ * Expiry comes from signed url parameters when present, otherwise from {@link Setting#getPlayTtl()}.
+ * An entry served from here that fails to play is dropped by {@link #invalidate} so the caller can
+ * resolve again; the url the player got after extraction is kept with the entry for that match.
+ */
+public class PlayCache {
+
+    private static final List<String> EXPIRES = Arrays.asList("expires", "e", "t", "wstime", "txtime");
+    private static final long MARGIN = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX = TimeUnit.HOURS.toMillis(6);
+    private static final int SIZE = 200;
+
+    private final Map<String, Entry> entries;
+    private final File file;
+
+    private static class Loader {
+        static volatile PlayCache INSTANCE = new PlayCache();
+    }
+
+    public static PlayCache get() {
+        return Loader.INSTANCE;
+    }
+
+    private PlayCache() {
+        file = Path.cache("play.json");
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > SIZE;
+            }
+        };
+        load();
+    }
+
+    private static String key(String key, String flag, String id) {
+        return key + "\n" + flag + "\n" + id;
+    }
+
+    public synchronized Result get(String key, String flag, String id) {
+        Entry entry = entries.get(key(key, flag, id));
+        if (entry == null) return null;
+        if (entry.expire > System.currentTimeMillis()) return entry.hit();
+        entries.remove(key(key, flag, id));
+        return null;
+    }
+
+    public synchronized void put(String key, String flag, String id, Result result) {
+        if (result.hasMsg() || result.getUrl().isEmpty()) return;
+        String url = result.getRealUrl();
+        long expire = expire(url, System.currentTimeMillis());
+        if (expire <= System.currentTimeMillis()) return;
+        entries.put(key(key, flag, id), new Entry(result.toString(), url, expire));
+        save();
+    }
+
+    public synchronized void resolved(String key, String flag, String id, String url) {
+        Entry entry = entries.get(key(key, flag, id));
+        if (entry != null) entry.resolved = url;
+    }
+
+    public synchronized boolean invalidate(String url) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.hit || (!entry.url.equals(url) && !url.equals(entry.resolved))) continue;
+            iterator.remove();
+            save();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        file.delete();
+    }
+
+    private long expire(String url, long now) {
+        long ttl = now + TimeUnit.MINUTES.toMillis(Setting.getPlayTtl());
+        Uri uri = Uri.parse(url);
+        if (uri.isOpaque()) return ttl;
+        for (String name : uri.getQueryParameterNames()) {
+            if (!EXPIRES.contains(name.toLowerCase())) continue;
+            long time = toMillis(uri.getQueryParameter(name));
+            if (time <= 0) continue;
+            if (time > now) return Math.min(time - MARGIN, now + MAX);
+            if (!"t".equals(name)) return now;
+        }
+        return ttl;
+    }
+
+    private long toMillis(String value) {
+        if (value == null || value.isEmpty()) return 0;
+        long time;
+        try {
+            time = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                time = Long.parseLong(value, 16);
+            } catch (NumberFormatException ignored) {
+                return 0;
+            }
+        }
+        if (time > 100_000_000_000L) return time;
+        if (time > 1_000_000_000L) return time * 1000;
+        return 0;
+    }
+
+    private void load() {
+        JsonObject object = Json.safeObject(Json.parse(Path.read(file)));
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, JsonElement> item : object.entrySet()) {
+            JsonObject value = Json.safeObject(item.getValue());
+            Entry entry = new Entry(Json.safeString(value, "result"), Json.safeString(value, "url"), value.has("expire") ? value.get("expire").getAsLong() : 0);
+            if (entry.expire > now) entries.put(item.getKey(), entry);
+        }
+    }
+
+    private void save() {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, Entry> item : entries.entrySet()) object.add(item.getKey(), item.getValue().toJson());
+        String text = object.toString();
+        App.execute(() -> Path.write(file, text.getBytes()));
+    }
+
+    private static class Entry {
+
+        private final String result;
+        private final String url;
+        private final long expire;
+        private String resolved;
+        private boolean hit;
+
+        Entry(String result, String url, long expire) {
+            this.result = result;
+            this.url = url;
+            this.expire = expire;
+        }
+
+        Result hit() {
+            hit = true;
+            return Result.objectFrom(result);
+        }
+
+        JsonObject toJson() {
+            JsonObject object = new JsonObject();
+            object.addProperty("result", result);
+            object.addProperty("url", url);
+            object.addProperty("expire", expire);
+            return object;
+        }
+    }
+}
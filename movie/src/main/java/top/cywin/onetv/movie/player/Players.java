@@ -45,13 +45,18 @@ import top.cywin.onetv.movie.event.PlayerEvent;
 import top.cywin.onetv.movie.impl.ParseCallback;
 import top.cywin.onetv.movie.impl.SessionCallback;
 import top.cywin.onetv.movie.player.danmaku.DanPlayer;
+import top.cywin.onetv.movie.player.extractor.Youtube;
 import top.cywin.onetv.movie.player.exo.ExoUtil;
+import top.cywin.onetv.movie.player.exo.PlaybackTuner;
+import top.cywin.onetv.movie.player.exo.QoeListener;
 import top.cywin.onetv.movie.server.Server;
+import top.cywin.onetv.movie.server.process.Hls;
 import top.cywin.onetv.movie.utils.FileUtil;
 import top.cywin.onetv.movie.utils.Notify;
 import top.cywin.onetv.movie.utils.ResUtil;
 import top.cywin.onetv.movie.utils.UrlUtil;
 import top.cywin.onetv.movie.utils.Util;
+import top.cywin.onetv.movie.catvod.net.OkPriority;
 import top.cywin.onetv.movie.catvod.utils.Path;
 import com.google.common.net.HttpHeaders;
 import com.orhanobut.logger.Logger;
@@ -77,15 +82,18 @@ public class Players implements Player.Listener, ParseCallback {
     private final StringBuilder builder;
     private final Formatter formatter;
     private final Runnable runnable;
+    private final QoeListener qoe;
 
     private Map<String, String> headers;
     private MediaSessionCompat session;
     private List<Danmaku> danmakus;
+    private PlaybackTuner tuner;
     private ExoPlayer exoPlayer;
     private DanPlayer danPlayer;
     private ParseJob parseJob;
     private PlayerView view;
     private VideoSize size;
+    private Channel channel;
     private List<Sub> subs;
     private String format;
     private String tag;
@@ -93,6 +101,7 @@ public class Players implements Player.Listener, ParseCallback {
     private String url;
     private Drm drm;
     private Sub sub;
+    private boolean live;
 
     private int decode;
     private int retry;
@@ -106,7 +115,11 @@ public class Players implements Player.Listener, ParseCallback {
     private Players(Activity activity) {
         decode = Setting.getDecode();
         builder = new StringBuilder();
-        runnable = () -> ErrorEvent.timeout(tag);
+        qoe = new QoeListener();
+        runnable = () -> {
+            qoe.error("TIMEOUT");
+            ErrorEvent.timeout(tag);
+        };
         formatter = new Formatter(builder, Locale.getDefault());
         createSession(activity);
     }
@@ -126,9 +139,11 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     private void setPlayer(PlayerView view) {
-        exoPlayer = new ExoPlayer.Builder(App.get()).setLoadControl(ExoUtil.buildLoadControl()).setTrackSelector(ExoUtil.buildTrackSelector()).setRenderersFactory(ExoUtil.buildRenderersFactory(isHard() ? EXTENSION_RENDERER_MODE_ON : EXTENSION_RENDERER_MODE_PREFER)).setMediaSourceFactory(ExoUtil.buildMediaSourceFactory()).build();
+        tuner = new PlaybackTuner();
+        exoPlayer = new ExoPlayer.Builder(App.get()).setLoadControl(tuner.getLoadControl()).setBandwidthMeter(tuner.getBandwidthMeter()).setTrackSelector(ExoUtil.buildTrackSelector()).setRenderersFactory(ExoUtil.buildRenderersFactory(isHard() ? EXTENSION_RENDERER_MODE_ON : EXTENSION_RENDERER_MODE_PREFER)).setMediaSourceFactory(ExoUtil.buildMediaSourceFactory()).build();
         exoPlayer.setAudioAttributes(AudioAttributes.DEFAULT, true);
         exoPlayer.addAnalyticsListener(new EventLogger());
+        exoPlayer.addAnalyticsListener(qoe);
         exoPlayer.setHandleAudioBecomingNoisy(true);
         exoPlayer.setPlayWhenReady(true);
         exoPlayer.addListener(this);
@@ -380,6 +395,7 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     public void release() {
+        qoe.end();
         stopParse();
         releasePlayer();
         session.release();
@@ -389,20 +405,46 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     private void releasePlayer() {
+        OkPriority.get().setBuffering(false);
         if (exoPlayer != null) exoPlayer.release();
+        if (tuner != null) tuner.release();
         if (danPlayer != null) danPlayer.release();
         if (view != null) view.setPlayer(null);
         exoPlayer = null;
     }
 
+    private boolean failover() {
+        Channel item = channel;
+        if (!live || item == null || !Setting.isRace() || !LineRacer.get().failover(item)) return false;
+        reset();
+        App.execute(() -> {
+            try {
+                item.setMsg(null);
+                Source.get().stop();
+                item.setUrl(Source.get().fetch(item));
+            } catch (Exception e) {
+                item.setMsg(e.getMessage());
+            }
+            App.post(() -> {
+                if (item == channel) start(item, Constant.TIMEOUT_PLAY);
+            });
+        });
+        return true;
+    }
+
     private void removeTimeoutCheck() {
         App.removeCallbacks(runnable);
     }
 
     public void start(Channel channel, long timeout) {
+        this.channel = channel;
+        live = true;
+        qoe.begin("live", channel.getName(), -1);
         if (channel.getDrm() != null && !FrameworkMediaDrm.isCryptoSchemeSupported(channel.getDrm().getUUID())) {
+            qoe.error("DRM");
             ErrorEvent.drm(tag);
         } else if (channel.hasMsg()) {
+            qoe.error("EXTRACT");
             ErrorEvent.extract(tag, channel.getMsg());
         } else if (channel.getParse() == 1) {
             startParse(channel.result(), false);
@@ -414,9 +456,14 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     public void start(Result result, boolean useParse, long timeout) {
+        channel = null;
+        live = false;
+        qoe.begin(String.valueOf(result.getKey()), result.getFlag(), QoeMetrics.get().takeResolved(String.valueOf(result.getKey()), result.getFlag()));
         if (result.getDrm() != null && !FrameworkMediaDrm.isCryptoSchemeSupported(result.getDrm().getUUID())) {
+            qoe.error("DRM");
             ErrorEvent.drm(tag);
         } else if (result.hasMsg()) {
+            qoe.error("EXTRACT");
             ErrorEvent.extract(tag, result.getMsg());
         } else if (result.getParse() == 1 || result.getJx() == 1) {
             startParse(result, useParse);
@@ -433,6 +480,7 @@ public class Players implements Player.Listener, ParseCallback {
         subs = result.getSubs();
         format = result.getFormat();
         danmakus = result.getDanmaku();
+        qoe.parse();
         parseJob = ParseJob.create(this).start(result, useParse);
     }
 
@@ -475,7 +523,9 @@ public class Players implements Player.Listener, ParseCallback {
     }
 
     private void setMediaItem(Map<String, String> headers, String url, String format, Drm drm, List<Sub> subs, List<Danmaku> danmakus, long timeout) {
-        if (exoPlayer != null) exoPlayer.setMediaItem(ExoUtil.getMediaItem(this.headers = checkUa(headers), UrlUtil.uri(this.url = url), this.format = format, this.drm = drm, checkSub(this.subs = subs), decode));
+        if (tuner != null) tuner.prepare(UrlUtil.uri(url), live);
+        qoe.prepare(url);
+        if (exoPlayer != null) exoPlayer.setMediaItem(ExoUtil.getMediaItem(this.headers = checkUa(headers), route(this.url = url, this.headers), this.format = format, this.drm = drm, checkSub(this.subs = subs), decode, live));
         if (danPlayer != null) setDanmaku(this.danmakus = danmakus);
         App.post(runnable, timeout);
         PlayerEvent.prepare(tag);
@@ -484,6 +534,11 @@ public class Players implements Player.Listener, ParseCallback {
         prepare();
     }
 
+    private Uri route(String url, Map<String, String> headers) {
+        Uri uri = UrlUtil.uri(url);
+        return Hls.isRouted(uri) ? Uri.parse(Hls.address(url, headers)) : uri;
+    }
+
     private void setDanmaku(List<Danmaku> items) {
         setDanmaku(items == null || items.isEmpty() ? Danmaku.empty() : items.get(0));
     }
@@ -607,6 +662,7 @@ public class Players implements Player.Listener, ParseCallback {
 
     @Override
     public void onParseError() {
+        qoe.error("PARSE");
         ErrorEvent.parse(tag);
     }
 
@@ -631,6 +687,7 @@ public class Players implements Player.Listener, ParseCallback {
 
     @Override
     public void onPlaybackStateChanged(int state) {
+        OkPriority.get().setBuffering(state == Player.STATE_BUFFERING);
         if (danPlayer != null) danPlayer.check(state);
         PlayerEvent.state(tag, state);
     }
@@ -651,7 +708,8 @@ public class Players implements Player.Listener, ParseCallback {
     @Override
     public void onPlayerError(@NonNull PlaybackException error) {
         Logger.t(TAG).e(error.errorCode + "," + url);
-        if (retried()) ErrorEvent.extract(tag, error.getErrorCodeName());
+        if (PlayCache.get().invalidate(url) || Youtube.invalidate(url)) PlayerEvent.refresh(tag);
+        else if (retried()) onError(error);
         else switch (error.errorCode) {
             case PlaybackException.ERROR_CODE_BEHIND_LIVE_WINDOW:
                 seekToDefaultPosition();
@@ -669,8 +727,21 @@ public class Players implements Player.Listener, ParseCallback {
                 setFormat(ExoUtil.getMimeType(error.errorCode));
                 break;
             default:
-                ErrorEvent.extract(tag, error.getErrorCodeName());
+                onError(error);
                 break;
         }
     }
+
+    private void onError(PlaybackException error) {
+        if (isSource(error.errorCode) && failover()) {
+            Logger.t(TAG).d("failover:" + channel.getLine());
+        } else {
+            qoe.error(error.getErrorCodeName());
+            ErrorEvent.extract(tag, error.getErrorCodeName());
+        }
+    }
+
+    private static boolean isSource(int errorCode) {
+        return errorCode >= PlaybackException.ERROR_CODE_IO_UNSPECIFIED && errorCode < PlaybackException.ERROR_CODE_PARSING_CONTAINER_MALFORMED;
+    }
 }
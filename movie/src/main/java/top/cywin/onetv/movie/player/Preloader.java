@@ -0,0 +1,179 @@
+package top.cywin.onetv.movie.player;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.media3.common.C;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.CacheDataSink;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.Setting;
+import top.cywin.onetv.movie.bean.Result;
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPriority;
+import top.cywin.onetv.movie.model.SiteViewModel;
+import top.cywin.onetv.movie.player.exo.CacheManager;
+import top.cywin.onetv.movie.utils.UrlUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import okhttp3.Response;
+
+/**
+ * Resolves the next episode once the current one passes {@link Setting#getPreload()} of its duration,
+ * then writes the head of its media into the player cache. {@link #take} hands the resolved result
+ * to the next play request, waiting briefly for one still in flight, so only the extractor step and
+ * player preparation remain.
+ */
+public class Preloader {
+
+    private static final long EXPIRE = TimeUnit.MINUTES.toMillis(10);
+    private static final long WAIT = 3_000;
+    private static final long LENGTH = 4 * 1024 * 1024;
+    private static final int SEGMENTS = 2;
+
+    private final ExecutorService executor;
+    private volatile CacheWriter writer;
+    private CountDownLatch ready;
+    private Future<?> future;
+    private String target;
+    private Result result;
+    private long time;
+
+    private static class Loader {
+        static volatile Preloader INSTANCE = new Preloader();
+    }
+
+    public static Preloader get() {
+        return Loader.INSTANCE;
+    }
+
+    private Preloader() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    private static String target(String key, String flag, String id) {
+        return key + "\n" + flag + "\n" + id;
+    }
+
+    public synchronized void check(String key, String flag, String id, long position, long duration) {
+        if (duration <= 0 || position < duration * Setting.getPreload()) return;
+        String target = target(key, flag, id);
+        if (target.equals(this.target)) return;
+        cancel();
+        this.target = target;
+        CountDownLatch latch = ready = new CountDownLatch(1);
+        future = executor.submit(() -> preload(target, key, flag, id, latch));
+    }
+
+    public Result take(String key, String flag, String id) {
+        String target = target(key, flag, id);
+        CountDownLatch latch;
+        synchronized (this) {
+            latch = target.equals(this.target) ? ready : null;
+        }
+        try {
+            if (latch != null) latch.await(WAIT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            boolean hit = target.equals(this.target) && result != null && SystemClock.elapsedRealtime() - time < EXPIRE;
+            Result item = hit ? result : null;
+            if (!hit) cancel();
+            this.target = null;
+            this.result = null;
+            return item;
+        }
+    }
+
+    public synchronized void cancel() {
+        if (writer != null) writer.cancel();
+        if (future != null) future.cancel(true);
+        writer = null;
+        future = null;
+        ready = null;
+        target = null;
+        result = null;
+    }
+
+    public void prefetch(List<Uri> segments, Map<String, String> headers) {
+        if (segments.isEmpty()) return;
+        App.execute(() -> {
+            CacheDataSource source = getDataSourceFactory(headers).createDataSource();
+            for (Uri segment : segments) {
+                try {
+                    new CacheWriter(source, new DataSpec.Builder().setUri(segment).build(), null, null).cache();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+    }
+
+    private void preload(String target, String key, String flag, String id, CountDownLatch latch) {
+        try {
+            Result item;
+            try {
+                item = SiteViewModel.getPlayer(key, flag, id);
+                synchronized (this) {
+                    if (!target.equals(this.target)) return;
+                    time = SystemClock.elapsedRealtime();
+                    result = item;
+                }
+            } finally {
+                latch.countDown();
+            }
+            if (item.getParse() == 0 && item.getJx() == 0 && !Source.get().match(item.getUrl().v())) prebuffer(item.getRealUrl(), item.getHeaders());
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private void prebuffer(String url, Map<String, String> headers) throws IOException {
+        Uri uri = UrlUtil.uri(url);
+        if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) return;
+        CacheDataSource source = getDataSourceFactory(headers).createDataSource();
+        String path = uri.getPath() == null ? "" : uri.getPath().toLowerCase();
+        if (!path.endsWith(".m3u8")) write(source, uri, LENGTH);
+        else for (Uri segment : getSegments(url, headers)) write(source, segment, C.LENGTH_UNSET);
+    }
+
+    private void write(CacheDataSource source, Uri uri, long length) throws IOException {
+        if (Thread.currentThread().isInterrupted()) return;
+        writer = new CacheWriter(source, new DataSpec.Builder().setUri(uri).setLength(length).build(), null, null);
+        writer.cache();
+    }
+
+    private List<Uri> getSegments(String url, Map<String, String> headers) throws IOException {
+        List<String> lines = getLines(url, headers);
+        for (int i = 0; i < lines.size(); i++) if (lines.get(i).startsWith("#EXT-X-STREAM-INF") && i + 1 < lines.size()) return getSegments(UrlUtil.resolve(url, lines.get(i + 1)), headers);
+        List<Uri> items = new ArrayList<>();
+        for (String line : lines) if (!line.startsWith("#") && items.size() < SEGMENTS) items.add(Uri.parse(UrlUtil.resolve(url, line)));
+        return items;
+    }
+
+    private List<String> getLines(String url, Map<String, String> headers) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Response response = OkHttp.newCall(OkHttp.client(OkPriority.Level.PREFETCH), url, Headers.of(headers)).execute()) {
+            for (String line : response.body().string().split("\n")) if (!line.trim().isEmpty()) lines.add(line.trim());
+        }
+        return lines;
+    }
+
+    private CacheDataSource.Factory getDataSourceFactory(Map<String, String> headers) {
+        OkHttpDataSource.Factory upstream = new OkHttpDataSource.Factory(OkHttp.client(OkPriority.Level.PREFETCH)).setDefaultRequestProperties(headers);
+        return new CacheDataSource.Factory().setCache(CacheManager.get().getCache()).setCacheKeyFactory(CacheManager.get().getCacheKeyFactory()).setUpstreamDataSourceFactory(upstream).setCacheWriteDataSinkFactory(new CacheDataSink.Factory().setCache(CacheManager.get().getCache()));
+    }
+}
@@ -0,0 +1,143 @@
+package top.cywin.onetv.movie.player;
+
+import android.os.SystemClock;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Path;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling store of the last {@link #SIZE} playback sessions, persisted under the cache dir. Sessions
+ * are summarised per site, flag and host on read so the stages of a slow start, stalls and errors
+ * can be traced back to where they came from.
+ */
+public class QoeMetrics {
+
+    private static final String[] STAGES = {"resolve", "parse", "prepare", "first_frame", "startup"};
+    private static final int RECENT = 20;
+    private static final int SIZE = 500;
+
+    private final Map<String, long[]> resolves;
+    private final ArrayDeque<JsonObject> sessions;
+    private final File file;
+
+    private static class Loader {
+        static volatile QoeMetrics INSTANCE = new QoeMetrics();
+    }
+
+    public static QoeMetrics get() {
+        return Loader.INSTANCE;
+    }
+
+    private QoeMetrics() {
+        file = Path.cache("qoe.json");
+        resolves = new HashMap<>();
+        sessions = new ArrayDeque<>();
+        JsonElement element = Json.parse(Path.read(file));
+        if (element.isJsonArray()) for (JsonElement item : element.getAsJsonArray()) sessions.add(item.getAsJsonObject());
+    }
+
+    private static String key(String site, String flag) {
+        return site + "\n" + flag;
+    }
+
+    public synchronized void resolved(String site, String flag, long elapsed) {
+        resolves.put(key(site, flag), new long[]{elapsed, SystemClock.elapsedRealtime()});
+    }
+
+    public synchronized long takeResolved(String site, String flag) {
+        long[] item = resolves.remove(key(site, flag));
+        return item == null || SystemClock.elapsedRealtime() - item[1] > 60_000 ? -1 : item[0];
+    }
+
+    public synchronized void record(JsonObject session) {
+        sessions.add(session);
+        while (sessions.size() > SIZE) sessions.poll();
+        JsonArray array = new JsonArray();
+        for (JsonObject item : sessions) array.add(item);
+        String text = array.toString();
+        App.execute(() -> Path.write(file, text.getBytes()));
+    }
+
+    public synchronized void clear() {
+        sessions.clear();
+        resolves.clear();
+        file.delete();
+    }
+
+    public synchronized JsonObject toJson() {
+        JsonObject object = new JsonObject();
+        object.add("site", summary("site"));
+        object.add("flag", summary("flag"));
+        object.add("host", summary("host"));
+        JsonArray recent = new JsonArray();
+        List<JsonObject> items = new ArrayList<>(sessions);
+        for (int i = Math.max(0, items.size() - RECENT); i < items.size(); i++) recent.add(items.get(i));
+        object.add("recent", recent);
+        return object;
+    }
+
+    private JsonObject summary(String dimension) {
+        Map<String, List<JsonObject>> groups = new LinkedHashMap<>();
+        for (JsonObject session : sessions) {
+            String name = Json.safeString(session, dimension);
+            if (!groups.containsKey(name)) groups.put(name, new ArrayList<>());
+            groups.get(name).add(session);
+        }
+        JsonObject object = new JsonObject();
+        for (Map.Entry<String, List<JsonObject>> group : groups.entrySet()) object.add(group.getKey(), summary(group.getValue()));
+        return object;
+    }
+
+    private JsonObject summary(List<JsonObject> items) {
+        JsonObject object = new JsonObject();
+        object.addProperty("count", items.size());
+        for (String stage : STAGES) object.add(stage, stage(items, stage));
+        long stalls = 0, stallMs = 0, playMs = 0, switches = 0, failed = 0;
+        JsonObject errors = new JsonObject();
+        for (JsonObject item : items) {
+            stalls += item.get("stalls").getAsLong();
+            stallMs += item.get("stall_ms").getAsLong();
+            playMs += item.get("play_ms").getAsLong();
+            switches += item.get("switches").getAsLong();
+            if (!item.has("error")) continue;
+            String error = Json.safeString(item, "error");
+            errors.addProperty(error, errors.has(error) ? errors.get(error).getAsInt() + 1 : 1);
+            failed++;
+        }
+        object.addProperty("stalls", stalls);
+        object.addProperty("stall_ms", stallMs);
+        object.addProperty("rebuffer_ratio", playMs + stallMs == 0 ? 0 : stallMs / (double) (playMs + stallMs));
+        object.addProperty("switches", switches);
+        object.addProperty("failed", failed);
+        object.add("errors", errors);
+        return object;
+    }
+
+    private JsonObject stage(List<JsonObject> items, String stage) {
+        List<Long> values = new ArrayList<>();
+        for (JsonObject item : items) if (item.has(stage) && item.get(stage).getAsLong() >= 0) values.add(item.get(stage).getAsLong());
+        Collections.sort(values);
+        JsonObject object = new JsonObject();
+        object.addProperty("count", values.size());
+        if (values.isEmpty()) return object;
+        long sum = 0;
+        for (long value : values) sum += value;
+        object.addProperty("avg", sum / values.size());
+        object.addProperty("p50", values.get((values.size() - 1) / 2));
+        object.addProperty("p90", values.get((int) Math.ceil(values.size() * 0.9) - 1));
+        return object;
+    }
+}
@@ -0,0 +1,135 @@
+package top.cywin.onetv.movie.player;
+
+import top.cywin.onetv.movie.Constants;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One bounded pool for episode extraction and parsing. Work is grouped in {@link Batch}es that carry
+ * a deadline; tasks see it through {@link #remaining()} and batches created inside a task never
+ * outlive the task that created them. Results are handed out in completion order. A task that starts
+ * a batch of its own while every thread is busy runs the children inline, since queueing them behind
+ * the parent that waits for them would stall both until the deadline.
+ */
+public class Scheduler {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    private static class Loader {
+        static volatile Scheduler INSTANCE = new Scheduler();
+    }
+
+    public static Scheduler get() {
+        return Loader.INSTANCE;
+    }
+
+    private Scheduler() {
+        executor = new ThreadPoolExecutor(Constants.THREAD_POOL, Constants.THREAD_POOL, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory("extract"));
+        executor.allowCoreThreadTimeOut(true);
+        timer = Executors.newSingleThreadScheduledExecutor(factory("extract-timer"));
+    }
+
+    private static ThreadFactory factory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static long remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    public static boolean expired() {
+        return remaining() == 0;
+    }
+
+    private void execute(Runnable runnable) {
+        if (DEADLINE.get() != null && executor.getActiveCount() >= executor.getMaximumPoolSize()) runnable.run();
+        else executor.execute(runnable);
+    }
+
+    public <T> Batch<T> batch(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        Long parent = DEADLINE.get();
+        return new Batch<>(parent == null ? deadline : Math.min(parent, deadline));
+    }
+
+    public class Batch<T> {
+
+        private final CompletionService<T> service;
+        private final List<Future<T>> futures;
+        private final AtomicInteger pending;
+        private final long deadline;
+
+        private Batch(long deadline) {
+            this.service = new ExecutorCompletionService<>(Scheduler.this::execute);
+            this.futures = new CopyOnWriteArrayList<>();
+            this.pending = new AtomicInteger();
+            this.deadline = deadline;
+        }
+
+        public Future<T> submit(Callable<T> task) {
+            pending.incrementAndGet();
+            Future<T> future = service.submit(() -> {
+                Long parent = DEADLINE.get();
+                DEADLINE.set(deadline);
+                try {
+                    return task.call();
+                } finally {
+                    if (parent == null) DEADLINE.remove();
+                    else DEADLINE.set(parent);
+                }
+            });
+            futures.add(future);
+            return future;
+        }
+
+        public Future<T> take() throws InterruptedException {
+            if (pending.get() == 0) return null;
+            Future<T> future = service.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            if (future == null) return null;
+            pending.decrementAndGet();
+            futures.remove(future);
+            return future;
+        }
+
+        public void hold() {
+            futures.add(new FutureTask<>(() -> null));
+        }
+
+        public void expire(Runnable callback) {
+            timer.schedule(() -> {
+                boolean running = false;
+                for (Future<T> future : futures) running |= !future.isDone();
+                if (!running) return;
+                cancel();
+                callback.run();
+            }, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+
+        public void cancel() {
+            for (Future<T> future : futures) future.cancel(true);
+            futures.clear();
+        }
+    }
+}
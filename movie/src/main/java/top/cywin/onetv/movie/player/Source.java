@@ -1,6 +1,5 @@
 package top.cywin.onetv.movie.player;
 
-import top.cywin.onetv.movie.Constants;
 import top.cywin.onetv.movie.bean.Channel;
 import top.cywin.onetv.movie.bean.Episode;
 import top.cywin.onetv.movie.bean.Flag;
@@ -15,11 +14,12 @@ import top.cywin.onetv.movie.player.extractor.Youtube;
 import top.cywin.onetv.movie.utils.UrlUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -53,6 +53,10 @@ public class Source {
         return null;
     }
 
+    public boolean match(String url) {
+        return getExtractor(url) != null;
+    }
+
     private void addCallable(Iterator<Episode> iterator, List<Callable<List<Episode>>> items) {
         String url = iterator.next().getUrl();
         if (Thunder.Parser.match(url)) {
@@ -65,14 +69,19 @@ public class Source {
     }
 
     public void parse(List<Flag> flags) throws Exception {
+        Scheduler.Batch<List<Episode>> batch = Scheduler.get().batch(TimeUnit.SECONDS.toMillis(30));
+        Map<Future<List<Episode>>, Flag> futures = new LinkedHashMap<>();
+        Map<Future<List<Episode>>, List<Episode>> results = new HashMap<>();
         for (Flag flag : flags) {
-            ExecutorService executor = Executors.newFixedThreadPool(Constants.THREAD_POOL);
             List<Callable<List<Episode>>> items = new ArrayList<>();
             Iterator<Episode> iterator = flag.getEpisodes().iterator();
             while (iterator.hasNext()) addCallable(iterator, items);
-            for (Future<List<Episode>> future : executor.invokeAll(items, 30, TimeUnit.SECONDS)) flag.getEpisodes().addAll(future.get());
-            executor.shutdownNow();
+            for (Callable<List<Episode>> item : items) futures.put(batch.submit(item), flag);
         }
+        Future<List<Episode>> future;
+        while ((future = batch.take()) != null) if (!future.isCancelled()) results.put(future, future.get());
+        batch.cancel();
+        for (Map.Entry<Future<List<Episode>>, Flag> entry : futures.entrySet()) if (results.containsKey(entry.getKey())) entry.getValue().getEpisodes().addAll(results.get(entry.getKey()));
     }
 
     public String fetch(Result result) throws Exception {
@@ -1,15 +1,34 @@
 package top.cywin.onetv.movie.player.exo;
 
+import android.net.Uri;
+import android.os.StatFs;
+
 import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSpec;
 import androidx.media3.datasource.cache.Cache;
-import androidx.media3.datasource.cache.NoOpCacheEvictor;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
 import androidx.media3.datasource.cache.SimpleCache;
 
 import top.cywin.onetv.movie.App;
 import top.cywin.onetv.movie.catvod.utils.Path;
+import top.cywin.onetv.movie.server.process.Hls;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class CacheManager {
 
+    private static final long MB = 1024 * 1024;
+    private static final long MIN_SIZE = 128 * MB;
+    private static final long MAX_SIZE = 2048 * MB;
+    private static final Set<String> VOLATILE = new HashSet<>(Arrays.asList("auth_key", "token", "sign", "signature", "sig", "expires", "wssecret", "wstime", "txsecret", "txtime", "hdnts", "hdnea", "policy", "key-pair-id"));
+
     private SimpleCache cache;
 
     private static class Loader {
@@ -20,13 +39,39 @@ public class CacheManager {
         return Loader.INSTANCE;
     }
 
-    public Cache getCache() {
+    public synchronized Cache getCache() {
         if (cache == null) create();
         return cache;
     }
 
+    public CacheKeyFactory getCacheKeyFactory() {
+        return CacheManager::buildKey;
+    }
+
     private void create() {
-        cache = new SimpleCache(Path.exo(), new NoOpCacheEvictor(), new StandaloneDatabaseProvider(App.get()));
+        File dir = Path.exo();
+        cache = new SimpleCache(dir, new LeastRecentlyUsedCacheEvictor(getMaxSize(dir)), new StandaloneDatabaseProvider(App.get()));
+    }
+
+    private long getMaxSize(File dir) {
+        try {
+            return Math.min(MAX_SIZE, Math.max(MIN_SIZE, new StatFs(dir.getPath()).getAvailableBytes() / 10));
+        } catch (Exception e) {
+            return MIN_SIZE;
+        }
     }
-}
 
+    private static String buildKey(DataSpec dataSpec) {
+        if (dataSpec.key != null) return dataSpec.key;
+        Uri origin = Hls.origin(dataSpec.uri);
+        Uri uri = origin == null ? dataSpec.uri : origin;
+        if (uri.isOpaque() || uri.getQuery() == null) return uri.toString();
+        List<String> params = new ArrayList<>();
+        for (String name : uri.getQueryParameterNames()) {
+            if (VOLATILE.contains(name.toLowerCase()) || name.toLowerCase().startsWith("x-amz-")) continue;
+            for (String value : uri.getQueryParameters(name)) params.add(name + "=" + value);
+        }
+        Collections.sort(params);
+        return uri.buildUpon().clearQuery().fragment(null).build() + "?" + String.join("&", params);
+    }
+}
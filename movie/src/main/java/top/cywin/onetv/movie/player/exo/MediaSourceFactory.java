@@ -10,6 +10,9 @@ import androidx.media3.common.MediaItem;
 import androidx.media3.datasource.DataSource;
 import androidx.media3.datasource.DefaultDataSource;
 import androidx.media3.datasource.HttpDataSource;
+import androidx.media3.datasource.ResolvingDataSource;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheDataSink;
 import androidx.media3.datasource.cache.CacheDataSource;
 import androidx.media3.datasource.okhttp.OkHttpDataSource;
 import androidx.media3.exoplayer.drm.DrmSessionManagerProvider;
@@ -23,31 +26,51 @@ import androidx.media3.extractor.ts.TsExtractor;
 
 import top.cywin.onetv.movie.App;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPriority;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class MediaSourceFactory implements MediaSource.Factory {
 
+    private static final int MAX_FACTORIES = 8;
+
     private final DefaultMediaSourceFactory defaultMediaSourceFactory;
+    private final Map<String, DefaultMediaSourceFactory> factories;
+    private DrmSessionManagerProvider drmSessionManagerProvider;
+    private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private HttpDataSource.Factory httpDataSourceFactory;
+    private DataSource.Factory upstreamDataSourceFactory;
     private DataSource.Factory dataSourceFactory;
     private ExtractorsFactory extractorsFactory;
 
     public MediaSourceFactory() {
         defaultMediaSourceFactory = new DefaultMediaSourceFactory(getDataSourceFactory(), getExtractorsFactory());
+        factories = new LinkedHashMap<String, DefaultMediaSourceFactory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DefaultMediaSourceFactory> eldest) {
+                return size() > MAX_FACTORIES;
+            }
+        };
     }
 
     @NonNull
     @Override
-    public MediaSource.Factory setDrmSessionManagerProvider(@NonNull DrmSessionManagerProvider drmSessionManagerProvider) {
-        return defaultMediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+    public synchronized MediaSource.Factory setDrmSessionManagerProvider(@NonNull DrmSessionManagerProvider drmSessionManagerProvider) {
+        this.drmSessionManagerProvider = drmSessionManagerProvider;
+        for (DefaultMediaSourceFactory factory : factories.values()) factory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        defaultMediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        return this;
     }
 
     @NonNull
     @Override
-    public MediaSource.Factory setLoadErrorHandlingPolicy(@NonNull LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
-        return defaultMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+    public synchronized MediaSource.Factory setLoadErrorHandlingPolicy(@NonNull LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+        this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
+        for (DefaultMediaSourceFactory factory : factories.values()) factory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        defaultMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        return this;
     }
 
     @NonNull
@@ -59,25 +82,43 @@ public class MediaSourceFactory implements MediaSource.Factory {
     @NonNull
     @Override
     public MediaSource createMediaSource(@NonNull MediaItem mediaItem) {
+        DefaultMediaSourceFactory factory = getFactory(mediaItem);
         if (mediaItem.mediaId.contains("***") && mediaItem.mediaId.contains("|||")) {
-            return createConcatenatingMediaSource(setHeader(mediaItem));
+            return createConcatenatingMediaSource(factory, mediaItem);
         } else {
-            return defaultMediaSourceFactory.createMediaSource(setHeader(mediaItem));
+            return factory.createMediaSource(mediaItem);
         }
     }
 
-    private MediaItem setHeader(MediaItem mediaItem) {
-        Map<String, String> headers = new HashMap<>();
+    private boolean isLive(MediaItem mediaItem) {
+        return mediaItem.localConfiguration != null && ExoUtil.LIVE.equals(mediaItem.localConfiguration.tag);
+    }
+
+    private Map<String, String> getHeaders(MediaItem mediaItem) {
+        Map<String, String> headers = new TreeMap<>();
         for (String key : mediaItem.requestMetadata.extras.keySet()) headers.put(key, mediaItem.requestMetadata.extras.get(key).toString());
-        getHttpDataSourceFactory().setDefaultRequestProperties(headers);
-        return mediaItem;
+        return headers;
     }
 
-    private MediaSource createConcatenatingMediaSource(MediaItem mediaItem) {
+    private synchronized DefaultMediaSourceFactory getFactory(MediaItem mediaItem) {
+        boolean live = isLive(mediaItem);
+        Map<String, String> headers = getHeaders(mediaItem);
+        String key = live + headers.toString();
+        DefaultMediaSourceFactory factory = factories.get(key);
+        if (factory != null) return factory;
+        DataSource.Factory upstream = live ? getUpstreamDataSourceFactory() : getDataSourceFactory();
+        factory = new DefaultMediaSourceFactory(new ResolvingDataSource.Factory(upstream, dataSpec -> dataSpec.withAdditionalHeaders(headers)), getExtractorsFactory());
+        if (drmSessionManagerProvider != null) factory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+        if (loadErrorHandlingPolicy != null) factory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        factories.put(key, factory);
+        return factory;
+    }
+
+    private MediaSource createConcatenatingMediaSource(DefaultMediaSourceFactory factory, MediaItem mediaItem) {
         ConcatenatingMediaSource2.Builder builder = new ConcatenatingMediaSource2.Builder();
         for (String split : mediaItem.mediaId.split("\\*\\*\\*")) {
             String[] info = split.split("\\|\\|\\|");
-            if (info.length >= 2) builder.add(defaultMediaSourceFactory.createMediaSource(mediaItem.buildUpon().setUri(Uri.parse(info[0])).build()), Long.parseLong(info[1]));
+            if (info.length >= 2) builder.add(factory.createMediaSource(mediaItem.buildUpon().setUri(Uri.parse(info[0])).build()), Long.parseLong(info[1]));
         }
         return builder.build();
     }
@@ -88,16 +129,22 @@ public class MediaSourceFactory implements MediaSource.Factory {
     }
 
     private DataSource.Factory getDataSourceFactory() {
-        if (dataSourceFactory == null) dataSourceFactory = buildReadOnlyCacheDataSource(new DefaultDataSource.Factory(App.get(), getHttpDataSourceFactory()));
+        if (dataSourceFactory == null) dataSourceFactory = new RoutingDataSource.Factory(buildCacheDataSource(getUpstreamDataSourceFactory()), getUpstreamDataSourceFactory());
         return dataSourceFactory;
     }
 
-    private CacheDataSource.Factory buildReadOnlyCacheDataSource(DataSource.Factory upstreamFactory) {
-        return new CacheDataSource.Factory().setCache(CacheManager.get().getCache()).setUpstreamDataSourceFactory(upstreamFactory).setCacheWriteDataSinkFactory(null).setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+    private DataSource.Factory getUpstreamDataSourceFactory() {
+        if (upstreamDataSourceFactory == null) upstreamDataSourceFactory = new DefaultDataSource.Factory(App.get(), getHttpDataSourceFactory());
+        return upstreamDataSourceFactory;
+    }
+
+    private CacheDataSource.Factory buildCacheDataSource(DataSource.Factory upstreamFactory) {
+        Cache cache = CacheManager.get().getCache();
+        return new CacheDataSource.Factory().setCache(cache).setCacheKeyFactory(CacheManager.get().getCacheKeyFactory()).setUpstreamDataSourceFactory(upstreamFactory).setCacheWriteDataSinkFactory(new CacheDataSink.Factory().setCache(cache)).setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
     }
 
     private HttpDataSource.Factory getHttpDataSourceFactory() {
-        if (httpDataSourceFactory == null) httpDataSourceFactory = new OkHttpDataSource.Factory(OkHttp.client());
+        if (httpDataSourceFactory == null) httpDataSourceFactory = new OkHttpDataSource.Factory(OkHttp.client(OkPriority.Level.PLAYBACK));
         return httpDataSourceFactory;
     }
 }
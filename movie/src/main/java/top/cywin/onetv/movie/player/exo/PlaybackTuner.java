@@ -0,0 +1,260 @@
+package top.cywin.onetv.movie.player.exo;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.LoadControl;
+import androidx.media3.exoplayer.upstream.BandwidthMeter;
+import androidx.media3.exoplayer.upstream.DefaultAllocator;
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
+
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.Setting;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.catvod.utils.Prefers;
+import top.cywin.onetv.movie.utils.UrlUtil;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per player tuning: the buffer ceiling and start thresholds follow the content type of the current
+ * item while {@link DefaultLoadControl} keeps the byte budget, and the bandwidth meter starts from
+ * the last estimate seen for the same network and host instead of a country default. Estimates are
+ * written back once enough bytes went through to trust the meter.
+ */
+public class PlaybackTuner {
+
+    private static final String KEY = "bandwidth";
+    private static final long TRUST = 512 * 1024;
+    private static final int SIZE = 128;
+
+    public enum Mode {
+
+        LIVE(8_000, 20_000, 1_000, 2_500, false),
+        VOD(DefaultLoadControl.DEFAULT_MIN_BUFFER_MS, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS, true),
+        LOCAL(5_000, 15_000, 500, 1_000, false);
+
+        private final int minMs;
+        private final int maxMs;
+        private final long startUs;
+        private final long rebufferUs;
+        private final boolean scaled;
+
+        Mode(int minMs, int maxMs, int startMs, int rebufferMs, boolean scaled) {
+            this.minMs = minMs;
+            this.maxMs = maxMs;
+            this.startUs = startMs * 1000L;
+            this.rebufferUs = rebufferMs * 1000L;
+            this.scaled = scaled;
+        }
+
+        int getMinMs() {
+            return scaled ? minMs * Setting.getBuffer() : minMs;
+        }
+
+        int getMaxMs() {
+            return scaled ? maxMs * Setting.getBuffer() : maxMs;
+        }
+    }
+
+    private final TunedLoadControl loadControl;
+    private final SeededMeter meter;
+    private String scope;
+
+    public PlaybackTuner() {
+        loadControl = new TunedLoadControl();
+        meter = new SeededMeter(new DefaultBandwidthMeter.Builder(App.get()).build());
+    }
+
+    public LoadControl getLoadControl() {
+        return loadControl;
+    }
+
+    public BandwidthMeter getBandwidthMeter() {
+        return meter;
+    }
+
+    public void prepare(Uri uri, boolean live) {
+        save();
+        Mode mode = getMode(uri, live);
+        loadControl.setMode(mode);
+        scope = mode == Mode.LOCAL ? null : getNetwork() + "|" + getHost(uri);
+        meter.seed(scope == null ? 0 : Store.INSTANCE.get(scope));
+    }
+
+    public void release() {
+        save();
+        scope = null;
+    }
+
+    private void save() {
+        if (scope != null && meter.isTrusted()) Store.INSTANCE.put(scope, meter.getBitrateEstimate());
+    }
+
+    private static Mode getMode(Uri uri, boolean live) {
+        String scheme = UrlUtil.scheme(uri);
+        if ("file".equals(scheme) || "content".equals(scheme) || "assets".equals(scheme)) return Mode.LOCAL;
+        return live ? Mode.LIVE : Mode.VOD;
+    }
+
+    private static String getHost(Uri uri) {
+        String host = UrlUtil.host(uri);
+        if (!"127.0.0.1".equals(host) || uri.isOpaque() || uri.getQueryParameter("url") == null) return host;
+        return UrlUtil.host(uri.getQueryParameter("url"));
+    }
+
+    private static String getNetwork() {
+        try {
+            ConnectivityManager manager = (ConnectivityManager) App.get().getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkCapabilities capabilities = manager.getNetworkCapabilities(manager.getActiveNetwork());
+            if (capabilities == null) return "none";
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) return "ethernet";
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) return "wifi";
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) return "cellular";
+            return "other";
+        } catch (Exception e) {
+            return "other";
+        }
+    }
+
+    private static class TunedLoadControl extends DefaultLoadControl {
+
+        private volatile Mode mode = Mode.VOD;
+        private volatile long maxUs;
+
+        TunedLoadControl() {
+            super(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE), Mode.VOD.getMinMs(), Mode.VOD.getMaxMs(), DEFAULT_BUFFER_FOR_PLAYBACK_MS, DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS, DEFAULT_TARGET_BUFFER_BYTES, DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS, DEFAULT_BACK_BUFFER_DURATION_MS, DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME);
+            setMode(Mode.VOD);
+        }
+
+        void setMode(Mode mode) {
+            this.maxUs = mode.getMaxMs() * 1000L;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean shouldContinueLoading(Parameters parameters) {
+            return parameters.bufferedDurationUs < maxUs && super.shouldContinueLoading(parameters);
+        }
+
+        @Override
+        public boolean shouldStartPlayback(Parameters parameters) {
+            long bufferedUs = (long) (parameters.bufferedDurationUs / Math.max(parameters.playbackSpeed, 1f));
+            long thresholdUs = parameters.rebuffering ? mode.rebufferUs : mode.startUs;
+            if (parameters.targetLiveOffsetUs != C.TIME_UNSET) thresholdUs = Math.min(parameters.targetLiveOffsetUs / 2, thresholdUs);
+            return thresholdUs <= 0 || bufferedUs >= thresholdUs || super.shouldStartPlayback(parameters);
+        }
+    }
+
+    private static class SeededMeter implements BandwidthMeter, TransferListener {
+
+        private final DefaultBandwidthMeter meter;
+        private volatile long seed;
+        private volatile long bytes;
+
+        SeededMeter(DefaultBandwidthMeter meter) {
+            this.meter = meter;
+        }
+
+        void seed(long bitrate) {
+            this.seed = bitrate;
+            this.bytes = 0;
+        }
+
+        boolean isTrusted() {
+            return bytes >= TRUST;
+        }
+
+        @Override
+        public long getBitrateEstimate() {
+            return seed > 0 && !isTrusted() ? seed : meter.getBitrateEstimate();
+        }
+
+        @Override
+        public long getTimeToFirstByteEstimateUs() {
+            return meter.getTimeToFirstByteEstimateUs();
+        }
+
+        @Nullable
+        @Override
+        public TransferListener getTransferListener() {
+            return this;
+        }
+
+        @Override
+        public void addEventListener(@NonNull Handler handler, @NonNull EventListener listener) {
+            meter.addEventListener(handler, listener);
+        }
+
+        @Override
+        public void removeEventListener(@NonNull EventListener listener) {
+            meter.removeEventListener(listener);
+        }
+
+        @Override
+        public void onTransferInitializing(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            meter.onTransferInitializing(source, dataSpec, isNetwork);
+        }
+
+        @Override
+        public void onTransferStart(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            meter.onTransferStart(source, dataSpec, isNetwork);
+        }
+
+        @Override
+        public void onBytesTransferred(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            meter.onBytesTransferred(source, dataSpec, isNetwork, bytesTransferred);
+            if (isNetwork) bytes += bytesTransferred;
+        }
+
+        @Override
+        public void onTransferEnd(@NonNull DataSource source, @NonNull DataSpec dataSpec, boolean isNetwork) {
+            meter.onTransferEnd(source, dataSpec, isNetwork);
+        }
+    }
+
+    private static class Store {
+
+        private static final Store INSTANCE = new Store();
+
+        private final Map<String, Long> items;
+
+        private Store() {
+            items = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > SIZE;
+                }
+            };
+            JsonObject object = Json.safeObject(Json.parse(Prefers.getString(KEY, "{}")));
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) items.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+
+        synchronized long get(String scope) {
+            Long value = items.get(scope);
+            return value == null ? 0 : value;
+        }
+
+        synchronized void put(String scope, long bitrate) {
+            if (bitrate <= 0) return;
+            Long value = items.get(scope);
+            items.put(scope, value == null ? bitrate : (value + bitrate) / 2);
+            JsonObject object = new JsonObject();
+            for (Map.Entry<String, Long> entry : items.entrySet()) object.addProperty(entry.getKey(), entry.getValue());
+            Prefers.put(KEY, object.toString());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package top.cywin.onetv.movie.player.exo;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.common.Format;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.Player;
+import androidx.media3.exoplayer.DecoderReuseEvaluation;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+
+import top.cywin.onetv.movie.player.QoeMetrics;
+import top.cywin.onetv.movie.utils.UrlUtil;
+import com.google.gson.JsonObject;
+
+/**
+ * Follows one play request from resolve to first frame and then counts stalls, bitrate switches and
+ * the last error until the next request or release, when the session goes to {@link QoeMetrics}.
+ * Buffering that starts right after a seek is the seek itself and is not counted as a stall.
+ */
+public class QoeListener implements AnalyticsListener {
+
+    private static final long SEEK_WINDOW = 1000;
+
+    private String site;
+    private String flag;
+    private String host;
+    private String error;
+    private long resolve;
+    private long parseAt;
+    private long parse;
+    private long prepareAt;
+    private long prepare;
+    private long firstFrame;
+    private long seekAt;
+    private long stallAt;
+    private long stallMs;
+    private long playAt;
+    private long playMs;
+    private int bitrate;
+    private int switches;
+    private int stalls;
+    private boolean active;
+
+    public void begin(String site, String flag, long resolve) {
+        end();
+        this.site = site;
+        this.flag = flag;
+        this.resolve = resolve;
+        this.host = "";
+        this.error = null;
+        this.parse = this.prepare = this.firstFrame = -1;
+        this.parseAt = this.prepareAt = this.seekAt = this.stallAt = this.playAt = 0;
+        this.stallMs = this.playMs = 0;
+        this.bitrate = this.switches = this.stalls = 0;
+        this.active = true;
+    }
+
+    public void parse() {
+        if (active) parseAt = SystemClock.elapsedRealtime();
+    }
+
+    public void prepare(String url) {
+        if (!active || firstFrame >= 0) begin(site == null ? "" : site, flag == null ? "" : flag, -1);
+        long now = SystemClock.elapsedRealtime();
+        if (parseAt > 0 && parse < 0) parse = now - parseAt;
+        if (prepareAt == 0) prepareAt = now;
+        host = UrlUtil.host(url);
+    }
+
+    public void error(String code) {
+        if (!active) return;
+        error = code;
+        end();
+    }
+
+    public void end() {
+        if (!active) return;
+        long now = SystemClock.elapsedRealtime();
+        if (stallAt > 0) stallMs += now - stallAt;
+        if (playAt > 0) playMs += now - playAt;
+        active = false;
+        QoeMetrics.get().record(toJson());
+    }
+
+    private JsonObject toJson() {
+        JsonObject object = new JsonObject();
+        object.addProperty("site", site);
+        object.addProperty("flag", flag);
+        object.addProperty("host", host);
+        object.addProperty("resolve", resolve);
+        object.addProperty("parse", parse);
+        object.addProperty("prepare", prepare);
+        object.addProperty("first_frame", firstFrame >= 0 && prepare >= 0 ? firstFrame - prepare : -1);
+        object.addProperty("startup", firstFrame < 0 ? -1 : Math.max(resolve, 0) + Math.max(parse, 0) + firstFrame);
+        object.addProperty("stalls", stalls);
+        object.addProperty("stall_ms", stallMs);
+        object.addProperty("play_ms", playMs);
+        object.addProperty("switches", switches);
+        if (error != null) object.addProperty("error", error);
+        return object;
+    }
+
+    @Override
+    public void onPlaybackStateChanged(@NonNull EventTime eventTime, int state) {
+        if (!active || prepareAt == 0) return;
+        long now = SystemClock.elapsedRealtime();
+        if (state == Player.STATE_READY && prepare < 0) prepare = now - prepareAt;
+        boolean seek = seekAt > 0 && now - seekAt < SEEK_WINDOW;
+        if (state == Player.STATE_BUFFERING && seek) {
+            seekAt = 0;
+        } else if (state == Player.STATE_BUFFERING && firstFrame >= 0 && stallAt == 0) {
+            stallAt = now;
+            stalls++;
+        } else if (state != Player.STATE_BUFFERING && stallAt > 0) {
+            stallMs += now - stallAt;
+            stallAt = 0;
+        }
+        if (state == Player.STATE_ENDED) end();
+    }
+
+    @Override
+    public void onPositionDiscontinuity(@NonNull EventTime eventTime, @NonNull Player.PositionInfo oldPosition, @NonNull Player.PositionInfo newPosition, int reason) {
+        if (active && reason == Player.DISCONTINUITY_REASON_SEEK) seekAt = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void onIsPlayingChanged(@NonNull EventTime eventTime, boolean isPlaying) {
+        if (!active) return;
+        long now = SystemClock.elapsedRealtime();
+        if (isPlaying && playAt == 0) playAt = now;
+        if (!isPlaying && playAt > 0) {
+            playMs += now - playAt;
+            playAt = 0;
+        }
+    }
+
+    @Override
+    public void onRenderedFirstFrame(@NonNull EventTime eventTime, @NonNull Object output, long renderTimeMs) {
+        if (active && prepareAt > 0 && firstFrame < 0) firstFrame = SystemClock.elapsedRealtime() - prepareAt;
+    }
+
+    @Override
+    public void onVideoInputFormatChanged(@NonNull EventTime eventTime, @NonNull Format format, @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+        if (!active || format.bitrate == Format.NO_VALUE) return;
+        if (bitrate != 0 && bitrate != format.bitrate) switches++;
+        bitrate = format.bitrate;
+    }
+
+    @Override
+    public void onPlayerError(@NonNull EventTime eventTime, @NonNull PlaybackException error) {
+        if (active) this.error = error.getErrorCodeName();
+    }
+}
@@ -0,0 +1,93 @@
+package top.cywin.onetv.movie.player.exo;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends media requests through the cache and everything else, manifests and non http uris,
+ * straight upstream. Manifests are never cached since a normalized key would otherwise replay a
+ * playlist carrying expired segment tokens. The HLS and DASH sources load playlists and manifests
+ * with {@link DataSpec#FLAG_ALLOW_GZIP} and media without it, so that flag tells them apart whatever
+ * the url looks like. Live items never get here, see {@link MediaSourceFactory}.
+ */
+public class RoutingDataSource implements DataSource {
+
+    private final DataSource cached;
+    private final DataSource upstream;
+    private DataSource current;
+
+    public static class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory cached;
+        private final DataSource.Factory upstream;
+
+        public Factory(DataSource.Factory cached, DataSource.Factory upstream) {
+            this.cached = cached;
+            this.upstream = upstream;
+        }
+
+        @NonNull
+        @Override
+        public DataSource createDataSource() {
+            return new RoutingDataSource(cached.createDataSource(), upstream.createDataSource());
+        }
+    }
+
+    private RoutingDataSource(DataSource cached, DataSource upstream) {
+        this.cached = cached;
+        this.upstream = upstream;
+    }
+
+    private static boolean isCacheable(DataSpec dataSpec) {
+        String scheme = dataSpec.uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) return false;
+        return !dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP);
+    }
+
+    @Override
+    public void addTransferListener(@NonNull TransferListener transferListener) {
+        cached.addTransferListener(transferListener);
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(@NonNull DataSpec dataSpec) throws IOException {
+        current = isCacheable(dataSpec) ? cached : upstream;
+        return current.open(dataSpec);
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        return current.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return current == null ? null : current.getUri();
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return current == null ? DataSource.super.getResponseHeaders() : current.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (current != null) current.close();
+        } finally {
+            current = null;
+        }
+    }
+}
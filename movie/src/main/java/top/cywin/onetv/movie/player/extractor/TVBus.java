@@ -1,23 +1,18 @@
 package top.cywin.onetv.movie.player.extractor;
 
-import android.net.Uri;
-import android.text.TextUtils;
-
 import top.cywin.onetv.movie.App;
 import top.cywin.onetv.movie.R;
 import top.cywin.onetv.movie.Setting;
 import top.cywin.onetv.movie.api.config.LiveConfig;
 import top.cywin.onetv.movie.bean.Core;
 import top.cywin.onetv.movie.exception.ExtractException;
+import top.cywin.onetv.movie.player.P2pManager;
 import top.cywin.onetv.movie.player.Source;
 import top.cywin.onetv.movie.utils.ResUtil;
-import top.cywin.onetv.movie.catvod.net.OkHttp;
-import top.cywin.onetv.movie.catvod.utils.Path;
 import com.google.gson.JsonObject;
 import top.cywin.onetv.movie.tvbus.engine.Listener;
 import top.cywin.onetv.movie.tvbus.engine.TVCore;
 
-import java.io.File;
 import java.util.concurrent.CountDownLatch;
 
 public class TVBus implements Source.Extractor, Listener {
@@ -25,36 +20,18 @@ public class TVBus implements Source.Extractor, Listener {
     private CountDownLatch latch;
     private volatile String hls;
     private TVCore tvcore;
-    private Core core;
 
     @Override
     public boolean match(String scheme, String host) {
         return "tvbus".equals(scheme);
     }
 
-    private void init(Core core) {
-        try {
-            App.get().setHook(core.getHook());
-            tvcore = new TVCore(getPath(core.getSo())).listener(this).auth(core.getAuth()).name(core.getName()).pass(core.getPass()).domain(core.getDomain()).broker(core.getBroker()).serv(0).play(8902).mode(1).init();
-        } catch (Exception ignored) {
-        } finally {
-            App.get().setHook(null);
-        }
-    }
-
-    private String getPath(String url) {
-        String name = Uri.parse(url).getLastPathSegment();
-        if (TextUtils.isEmpty(name)) name = "tvcore.so";
-        File file = new File(Path.so(), name);
-        if (file.length() < 10240) Path.write(file, OkHttp.bytes(url));
-        return file.getAbsolutePath();
-    }
-
     @Override
     public String fetch(String url) throws Exception {
-        Core c = LiveConfig.get().getHome().getCore();
-        if (core != null && !core.equals(c)) change();
-        if (tvcore == null) init(core = c);
+        Core core = LiveConfig.get().getHome().getCore();
+        if (P2pManager.get().isChanged(core)) change();
+        P2pManager.get().setListener(this);
+        tvcore = P2pManager.await(P2pManager.get().tvbus(core));
         latch = new CountDownLatch(1);
         tvcore.start(url);
         latch.await();
@@ -81,7 +58,8 @@ public class TVBus implements Source.Extractor, Listener {
 
     @Override
     public void exit() {
-        if (tvcore != null) tvcore.quit();
+        P2pManager.get().setListener(null);
+        P2pManager.get().quit();
         tvcore = null;
     }
 
@@ -1,15 +1,18 @@
 package top.cywin.onetv.movie.player.extractor;
 
 import android.net.Uri;
-import android.os.SystemClock;
 
+import top.cywin.onetv.movie.Constants;
+import top.cywin.onetv.movie.Setting;
 import top.cywin.onetv.movie.bean.Episode;
 import top.cywin.onetv.movie.exception.ExtractException;
+import top.cywin.onetv.movie.player.Scheduler;
 import top.cywin.onetv.movie.player.Source;
 import top.cywin.onetv.movie.utils.Download;
 import top.cywin.onetv.movie.utils.UrlUtil;
 import top.cywin.onetv.movie.catvod.utils.Path;
 import top.cywin.onetv.movie.catvod.utils.Util;
+import top.cywin.onetv.movie.thunder.downloadlib.TaskMonitor;
 import top.cywin.onetv.movie.thunder.downloadlib.XLTaskHelper;
 import top.cywin.onetv.movie.thunder.downloadlib.parameter.GetTaskId;
 import top.cywin.onetv.movie.thunder.downloadlib.parameter.TorrentFileInfo;
@@ -25,6 +28,9 @@ import java.util.regex.Pattern;
 
 public class Thunder implements Source.Extractor {
 
+    private static final long HEAD = 4 * 1024 * 1024;
+    private static final long HEAD_WAIT = 3_000;
+
     private GetTaskId taskId;
 
     @Override
@@ -42,24 +48,27 @@ public class Thunder implements Source.Extractor {
         String name = uri.getQueryParameter("name");
         int index = Integer.parseInt(uri.getQueryParameter("index"));
         taskId = XLTaskHelper.get().addTorrentTask(torrent, Objects.requireNonNull(torrent.getParentFile()), index);
-        while (true) {
-            XLTaskInfo taskInfo = XLTaskHelper.get().getBtSubTaskInfo(taskId, index).mTaskInfo;
-            if (taskInfo.mTaskStatus == 3) throw new ExtractException(taskInfo.getErrorMsg());
-            if (taskInfo.mTaskStatus != 0) return XLTaskHelper.get().getLocalUrl(new File(torrent.getParent(), name));
-            else SystemClock.sleep(300);
-        }
+        TaskMonitor.get().track(taskId);
+        XLTaskInfo taskInfo = TaskMonitor.get().await(taskId, index, 0, Math.min(Constants.TIMEOUT_VOD, Scheduler.remaining()));
+        if (taskInfo.mTaskStatus == 1) taskInfo = TaskMonitor.get().await(taskId, index, HEAD, Math.min(HEAD_WAIT, Scheduler.remaining()));
+        if (taskInfo.mTaskStatus == 3) throw new ExtractException(taskInfo.getErrorMsg());
+        if (taskInfo.mTaskStatus == 0) throw new ExtractException("timeout");
+        return XLTaskHelper.get().getLocalUrl(new File(torrent.getParent(), name));
     }
 
     private String addThunderTask(String url) {
         File folder = Path.thunder(Util.md5(url));
         taskId = XLTaskHelper.get().addThunderTask(url, folder);
+        TaskMonitor.get().track(taskId);
         return XLTaskHelper.get().getLocalUrl(taskId.getSaveFile());
     }
 
     @Override
     public void stop() {
         if (taskId == null) return;
-        XLTaskHelper.get().deleteTask(taskId);
+        XLTaskHelper.get().stopTask(taskId);
+        TaskMonitor.get().untrack(taskId);
+        TaskMonitor.get().cleanup(Setting.getThunderQuota() * 1024L * 1024L);
         taskId = null;
     }
 
@@ -72,7 +81,6 @@ public class Thunder implements Source.Extractor {
 
         private static final Pattern THUNDER = Pattern.compile("(magnet|thunder|ed2k):.*");
         private final String url;
-        private int time;
 
         public static boolean match(String url) {
             return THUNDER.matcher(url).find() || isTorrent(url);
@@ -86,27 +94,27 @@ public class Thunder implements Source.Extractor {
             this.url = url;
         }
 
-        private void sleep() {
-            SystemClock.sleep(10);
-            time += 10;
-        }
-
         private static boolean isTorrent(String url) {
             return !url.startsWith("magnet") && url.split(";")[0].endsWith(".torrent");
         }
 
         @Override
-        public List<Episode> call() {
+        public List<Episode> call() throws InterruptedException {
             boolean torrent = isTorrent(url);
             List<Episode> episodes = new ArrayList<>();
             GetTaskId taskId = XLTaskHelper.get().parse(url, Path.thunder(Util.md5(url)));
             if (!torrent && !taskId.getRealUrl().startsWith("magnet")) return Arrays.asList(Episode.create(taskId.getFileName(), taskId.getRealUrl()));
-            if (torrent) Download.create(url, taskId.getSaveFile()).start();
-            else while (XLTaskHelper.get().getTaskInfo(taskId).getTaskStatus() != 2 && time < 5000) sleep();
-            List<TorrentFileInfo> medias = XLTaskHelper.get().getTorrentInfo(taskId.getSaveFile()).getMedias();
-            for (TorrentFileInfo media : medias) episodes.add(Episode.create(media.getFileName(), media.getSize(), media.getPlayUrl()));
-            XLTaskHelper.get().stopTask(taskId);
-            return episodes;
+            try {
+                TaskMonitor.get().track(taskId);
+                if (torrent) Download.create(url, taskId.getSaveFile()).start();
+                else TaskMonitor.get().await(taskId, -1, Long.MAX_VALUE, Math.min(5000, Scheduler.remaining()));
+                List<TorrentFileInfo> medias = XLTaskHelper.get().getTorrentInfo(taskId.getSaveFile()).getMedias();
+                for (TorrentFileInfo media : medias) episodes.add(Episode.create(media.getFileName(), media.getSize(), media.getPlayUrl()));
+                return episodes;
+            } finally {
+                XLTaskHelper.get().stopTask(taskId);
+                TaskMonitor.get().untrack(taskId);
+            }
         }
     }
 }
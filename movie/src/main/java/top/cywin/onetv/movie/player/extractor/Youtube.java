@@ -1,9 +1,14 @@
 package top.cywin.onetv.movie.player.extractor;
 
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.util.Base64;
 
+import top.cywin.onetv.movie.App;
 import top.cywin.onetv.movie.bean.Episode;
 import top.cywin.onetv.movie.impl.NewPipeImpl;
+import top.cywin.onetv.movie.player.Scheduler;
 import top.cywin.onetv.movie.player.Source;
 
 import org.schabi.newpipe.extractor.ListExtractor;
@@ -13,6 +18,7 @@ import org.schabi.newpipe.extractor.linkhandler.ListLinkHandler;
 import org.schabi.newpipe.extractor.localization.Localization;
 import org.schabi.newpipe.extractor.services.youtube.extractors.YoutubePlaylistExtractor;
 import org.schabi.newpipe.extractor.services.youtube.linkHandler.YoutubePlaylistLinkHandlerFactory;
+import org.schabi.newpipe.extractor.services.youtube.linkHandler.YoutubeStreamLinkHandlerFactory;
 import org.schabi.newpipe.extractor.stream.AudioStream;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
 import org.schabi.newpipe.extractor.stream.StreamInfoItem;
@@ -21,9 +27,13 @@ import org.schabi.newpipe.extractor.stream.VideoStream;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Youtube implements Source.Extractor {
@@ -31,6 +41,16 @@ public class Youtube implements Source.Extractor {
     private static final String MPD = "<MPD xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='urn:mpeg:dash:schema:mpd:2011' xsi:schemaLocation='urn:mpeg:dash:schema:mpd:2011 DASH-MPD.xsd' type='static' mediaPresentationDuration='PT%sS' minBufferTime='PT1.500S' profiles='urn:mpeg:dash:profile:isoff-on-demand:2011'>\n" + "<Period duration='PT%sS' start='PT0S'>\n" + "%s\n" + "%s\n" + "</Period>\n" + "</MPD>";
     private static final String ADAPT = "<AdaptationSet lang='chi'>\n" + "<ContentComponent contentType='%s'/>\n" + "<Representation id='%d' bandwidth='%d' codecs='%s' mimeType='%s' %s>\n" + "<BaseURL>%s</BaseURL>\n" + "<SegmentBase indexRange='%s'>\n" + "<Initialization range='%s'/>\n" + "</SegmentBase>\n" + "</Representation>\n" + "</AdaptationSet>";
     private static final Pattern PATTERN_LIST = Pattern.compile("(youtube\\.com|youtu\\.be).*list=");
+    private static final Pattern EXPIRE = Pattern.compile("[?&/]expire[=/](\\d+)");
+    private static final long MARGIN = 60_000;
+    private static final int SIZE = 32;
+
+    private static final Map<String, Entry> cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > SIZE;
+        }
+    });
 
     public Youtube() {
         NewPipe.init(NewPipeImpl.get(), Localization.fromLocale(Locale.getDefault()));
@@ -43,15 +63,57 @@ public class Youtube implements Source.Extractor {
 
     @Override
     public String fetch(String url) throws Exception {
+        String id = getId(url) + "\n" + getNetwork();
+        Entry entry = cache.get(id);
+        if (entry != null && entry.expire > System.currentTimeMillis()) return entry.hit().get();
         StreamInfo info = StreamInfo.getInfo(url);
-        return isLive(info) ? getLive(info) : getMpd(info);
+        entry = isLive(info) ? new Entry(getLive(info)) : new Entry(info);
+        if (entry.expire > System.currentTimeMillis()) cache.put(id, entry);
+        else cache.remove(id);
+        return entry.get();
+    }
+
+    private String getId(String url) {
+        try {
+            return YoutubeStreamLinkHandlerFactory.getInstance().getId(url);
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    private static String getNetwork() {
+        try {
+            ConnectivityManager manager = (ConnectivityManager) App.get().getSystemService(Context.CONNECTIVITY_SERVICE);
+            Network network = manager.getActiveNetwork();
+            return network == null ? "none" : network.toString();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    public static boolean invalidate(String url) {
+        synchronized (cache) {
+            Iterator<Entry> iterator = cache.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!url.equals(entry.result)) continue;
+                iterator.remove();
+                return entry.hit;
+            }
+            return false;
+        }
+    }
+
+    static long getExpire(String url) {
+        Matcher matcher = EXPIRE.matcher(url);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 - MARGIN : 0;
     }
 
     private boolean isLive(StreamInfo info) {
         return StreamType.LIVE_STREAM.equals(info.getStreamType());
     }
 
-    private String getLive(StreamInfo info) {
+    private static String getLive(StreamInfo info) {
         if (!info.getHlsUrl().isEmpty()) {
             return info.getHlsUrl();
         } else if (!info.getDashMpdUrl().isEmpty()) {
@@ -61,7 +123,7 @@ public class Youtube implements Source.Extractor {
         }
     }
 
-    private String getMpd(StreamInfo info) {
+    private static String getMpd(StreamInfo info) {
         StringBuilder video = new StringBuilder();
         StringBuilder audio = new StringBuilder();
         List<AudioStream> audioFormats = info.getAudioStreams();
@@ -72,15 +134,15 @@ public class Youtube implements Source.Extractor {
         return "data:application/dash+xml;base64," + Base64.encodeToString(mpd.getBytes(), Base64.DEFAULT);
     }
 
-    private String getVideoParam(VideoStream format) {
+    private static String getVideoParam(VideoStream format) {
         return String.format(Locale.getDefault(), "height='%d' width='%d' frameRate='%d' maxPlayoutRate='1' startWithSAP='1'", format.getHeight(), format.getWidth(), format.getFps());
     }
 
-    private String getAudioParam(AudioStream format) {
+    private static String getAudioParam(AudioStream format) {
         return String.format(Locale.getDefault(), "subsegmentAlignment='true' audioSamplingRate='%d'", format.getItagItem().getSampleRate());
     }
 
-    private String getAdaptationSet(VideoStream format, String param) {
+    private static String getAdaptationSet(VideoStream format, String param) {
         int iTag = format.getItag();
         int bitrate = format.getBitrate();
         String codecs = format.getCodec();
@@ -91,7 +153,7 @@ public class Youtube implements Source.Extractor {
         return String.format(Locale.getDefault(), ADAPT, "video", iTag, bitrate, codecs, mimeType, param, url, indexRange, initRange);
     }
 
-    private String getAdaptationSet(AudioStream format, String param) {
+    private static String getAdaptationSet(AudioStream format, String param) {
         int iTag = format.getItag();
         int bitrate = format.getBitrate();
         String codecs = format.getCodec();
@@ -108,6 +170,40 @@ public class Youtube implements Source.Extractor {
 
     @Override
     public void exit() {
+        cache.clear();
+    }
+
+    static class Entry {
+
+        final long expire;
+        private StreamInfo info;
+        private volatile String result;
+        private volatile boolean hit;
+
+        Entry(String url) {
+            this.expire = getExpire(url);
+            this.result = url;
+        }
+
+        Entry(StreamInfo info) {
+            long expire = Long.MAX_VALUE;
+            for (AudioStream format : info.getAudioStreams()) expire = Math.min(expire, getExpire(format.getContent()));
+            for (VideoStream format : info.getVideoOnlyStreams()) expire = Math.min(expire, getExpire(format.getContent()));
+            this.expire = expire == Long.MAX_VALUE ? 0 : expire;
+            this.info = info;
+        }
+
+        Entry hit() {
+            hit = true;
+            return this;
+        }
+
+        synchronized String get() {
+            if (result != null) return result;
+            result = getMpd(info);
+            info = null;
+            return result;
+        }
     }
 
     public static class Parser implements Callable<List<Episode>> {
@@ -146,7 +242,7 @@ public class Youtube implements Source.Extractor {
             for (StreamInfoItem item : page.getItems()) {
                 episodes.add(Episode.create(item.getName(), item.getUrl()));
             }
-            if (page.hasNextPage()) {
+            if (page.hasNextPage() && !Scheduler.expired()) {
                 try {
                     add(episodes, extractor.getPage(page.getNextPage()));
                 } catch (Exception e) {
@@ -2,6 +2,7 @@ package top.cywin.onetv.movie.quickjs.utils;
 
 import android.net.Uri;
 
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 import top.cywin.onetv.movie.catvod.utils.Asset;
 import top.cywin.onetv.movie.catvod.utils.Path;
@@ -27,7 +28,7 @@ public class Module {
     }
 
     public String fetch(String name) {
-        if (cache.contains(name)) return cache.get(name);
+        if (cache.containsKey(name)) return cache.get(name);
         if (name.startsWith("http")) cache.put(name, request(name));
         if (name.startsWith("assets")) cache.put(name, Asset.read(name));
         if (name.startsWith("lib/")) cache.put(name, Asset.read("js/" + name));
@@ -37,7 +38,7 @@ public class Module {
     private String request(String url) {
         try {
             Uri uri = Uri.parse(url);
-            byte[] data = OkHttp.bytes(url);
+            byte[] data = OkHttp.bytes(OkHttp.client(OkCache.Type.SCRIPT), url);
             File file = Path.js(uri.getLastPathSegment());
             boolean cache = !"127.0.0.1".equals(uri.getHost());
             if (cache) new Thread(() -> Path.write(file, data)).start();
@@ -5,10 +5,14 @@ import top.cywin.onetv.movie.bean.Device;
 import top.cywin.onetv.movie.server.impl.Process;
 import top.cywin.onetv.movie.server.process.Action;
 import top.cywin.onetv.movie.server.process.Cache;
+import top.cywin.onetv.movie.server.process.Download;
+import top.cywin.onetv.movie.server.process.Hls;
 import top.cywin.onetv.movie.server.process.Local;
 import top.cywin.onetv.movie.server.process.Media;
+import top.cywin.onetv.movie.server.process.Metrics;
 import top.cywin.onetv.movie.server.process.Parse;
 import top.cywin.onetv.movie.server.process.Proxy;
+import top.cywin.onetv.movie.server.process.Qoe;
 import top.cywin.onetv.movie.catvod.utils.Asset;
 
 import java.io.InputStream;
@@ -34,10 +38,14 @@ public class Nano extends NanoHTTPD {
         process = new ArrayList<>();
         process.add(new Action());
         process.add(new Cache());
+        process.add(new Download());
+        process.add(new Hls());
         process.add(new Local());
         process.add(new Media());
+        process.add(new Metrics());
         process.add(new Parse());
         process.add(new Proxy());
+        process.add(new Qoe());
     }
 
     public static Response ok() {
@@ -1,5 +1,7 @@
 package top.cywin.onetv.movie.server;
 
+import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.download.DownloadManager;
 import top.cywin.onetv.movie.player.Players;
 import top.cywin.onetv.movie.catvod.Proxy;
 import top.cywin.onetv.movie.catvod.utils.Util;
@@ -48,6 +50,7 @@ public class Server {
                 nano = new Nano(i);
                 nano.start(500);
                 Proxy.set(i);
+                App.execute(DownloadManager::get);
                 break;
             } catch (Throwable e) {
                 nano = null;
@@ -0,0 +1,53 @@
+package top.cywin.onetv.movie.server.process;
+
+import android.text.TextUtils;
+
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.download.DownloadManager;
+import top.cywin.onetv.movie.server.Nano;
+import top.cywin.onetv.movie.server.impl.Process;
+import top.cywin.onetv.movie.utils.UrlUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public class Download implements Process {
+
+    @Override
+    public boolean isRequest(NanoHTTPD.IHTTPSession session, String url) {
+        return url.startsWith("/download");
+    }
+
+    @Override
+    public NanoHTTPD.Response doResponse(NanoHTTPD.IHTTPSession session, String url, Map<String, String> files) {
+        Map<String, String> params = session.getParms();
+        String id = params.get("id");
+        switch (params.get("do") == null ? "" : params.get("do")) {
+            case "add":
+                String link = params.get("url");
+                String scheme = TextUtils.isEmpty(link) ? "" : UrlUtil.scheme(link);
+                if (!"http".equals(scheme) && !"https".equals(scheme)) return Nano.error(NanoHTTPD.Response.Status.BAD_REQUEST, "Invalid url");
+                Map<String, String> headers = Json.toMap(params.get("header"));
+                return Nano.ok(DownloadManager.get().add(params.get("name"), link, headers == null ? new HashMap<>() : headers));
+            case "pause":
+                DownloadManager.get().pause(id);
+                return Nano.ok();
+            case "resume":
+                DownloadManager.get().resume(id);
+                return Nano.ok();
+            case "delete":
+                DownloadManager.get().delete(id);
+                return Nano.ok();
+            case "play":
+                String play = DownloadManager.get().getPlayUrl(id);
+                if (play == null) return Nano.error(NanoHTTPD.Response.Status.NOT_FOUND, "Not Found");
+                NanoHTTPD.Response response = NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.REDIRECT, NanoHTTPD.MIME_PLAINTEXT, "");
+                response.addHeader("Location", play);
+                return response;
+            default:
+                return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", DownloadManager.get().toJson().toString());
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package top.cywin.onetv.movie.server.process;
+
+import android.net.Uri;
+
+import top.cywin.onetv.movie.catvod.net.OkHttp;
+import top.cywin.onetv.movie.catvod.net.OkPriority;
+import top.cywin.onetv.movie.catvod.utils.Json;
+import top.cywin.onetv.movie.player.Preloader;
+import top.cywin.onetv.movie.server.Nano;
+import top.cywin.onetv.movie.server.Server;
+import top.cywin.onetv.movie.server.impl.Process;
+import top.cywin.onetv.movie.utils.Sniffer;
+import top.cywin.onetv.movie.utils.UrlUtil;
+import com.google.common.net.HttpHeaders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.Headers;
+import okhttp3.Response;
+
+/**
+ * Streams an HLS playlist line by line: relative uris are resolved, child playlists are routed back
+ * through here, short discontinuity blocks matching an ad pattern are dropped and the next segments can be
+ * written into the player cache. Ad patterns come from the site rules for the playlist host plus the
+ * optional {@code ad} parameter. A pattern sees the original lines of one discontinuity block followed by
+ * the {@code #EXT-X-DISCONTINUITY} that closes it, so rules written for a pair of those tags keep working,
+ * and a dropped block still passes on its {@code ENDLIST}, {@code KEY} and {@code MAP} tags. Blocks are
+ * only dropped from VOD playlists, since removing segments from a live window shifts the media sequence
+ * of the ones after it; once an ad block shows up in a playlist of unknown type the rest is held until
+ * {@code #EXT-X-ENDLIST} or the end of the body.
+ * <p>
+ * {@code /hls/index.m3u8?url=&header=&ad=&prefetch=&proxy=}, with {@code /hls/segment?url=} for proxied
+ * segments so the player cache keys them by their origin url.
+ */
+public class Hls implements Process {
+
+    private static final String PATH = "/hls/index.m3u8";
+    private static final String SEGMENT = "/hls/segment";
+    private static final Pattern URI = Pattern.compile("URI=\"([^\"]+)\"");
+    private static final int BLOCK = 64;
+
+    public static String address(String url, Map<String, String> headers) {
+        return Server.get().getAddress(PATH + "?url=" + encode(url) + "&header=" + encode(Json.toObject(headers).toString()));
+    }
+
+    public static boolean isRouted(Uri uri) {
+        String scheme = UrlUtil.scheme(uri);
+        if (!"http".equals(scheme) && !"https".equals(scheme)) return false;
+        if (!UrlUtil.path(uri).toLowerCase().endsWith(".m3u8")) return false;
+        return !Sniffer.getRegex(uri).isEmpty();
+    }
+
+    public static Uri origin(Uri uri) {
+        if (uri.isOpaque() || !"127.0.0.1".equals(uri.getHost()) || !SEGMENT.equals(uri.getPath())) return null;
+        String url = uri.getQueryParameter("url");
+        return url == null ? null : Uri.parse(url);
+    }
+
+    private static String encode(String text) {
+        try {
+            return URLEncoder.encode(text, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return text;
+        }
+    }
+
+    @Override
+    public boolean isRequest(NanoHTTPD.IHTTPSession session, String url) {
+        return url.startsWith("/hls");
+    }
+
+    @Override
+    public NanoHTTPD.Response doResponse(NanoHTTPD.IHTTPSession session, String url, Map<String, String> files) {
+        try {
+            Map<String, String> params = session.getParms();
+            Map<String, String> headers = Json.toMap(params.get("header"));
+            if (headers == null) headers = new HashMap<>();
+            if (url.startsWith(SEGMENT)) return raw(session, params.get("url"), headers);
+            int prefetch = getPrefetch(params.get("prefetch"));
+            Response response = OkHttp.newCall(OkHttp.client(OkPriority.Level.PLAYBACK), params.get("url"), Headers.of(headers)).execute();
+            if (!response.isSuccessful()) {
+                response.close();
+                return Nano.error(response.code() + " " + response.message());
+            }
+            return NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK, "application/vnd.apple.mpegurl", new Rewriter(response, params, headers, prefetch));
+        } catch (Throwable e) {
+            return Nano.error(e.getMessage());
+        }
+    }
+
+    private static int getPrefetch(String value) {
+        try {
+            return value == null ? 0 : Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private NanoHTTPD.Response raw(NanoHTTPD.IHTTPSession session, String url, Map<String, String> headers) throws IOException {
+        String range = session.getHeaders().get("range");
+        if (range != null) headers.put(HttpHeaders.RANGE, range);
+        Response response = OkHttp.newCall(OkHttp.client(OkPriority.Level.PLAYBACK), url, Headers.of(headers)).execute();
+        NanoHTTPD.Response.Status status = NanoHTTPD.Response.Status.lookup(response.code());
+        NanoHTTPD.Response res = NanoHTTPD.newChunkedResponse(status == null ? NanoHTTPD.Response.Status.OK : status, String.valueOf(response.body().contentType()), response.body().byteStream());
+        for (String name : new String[]{HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES}) if (response.header(name) != null) res.addHeader(name, response.header(name));
+        return res;
+    }
+
+    private static class Rewriter extends InputStream {
+
+        private final Map<String, String> params;
+        private final Map<String, String> headers;
+        private final BufferedReader reader;
+        private final Response response;
+        private final List<Pattern> ads;
+        private final List<String> block;
+        private final List<String> source;
+        private final List<Uri> first;
+        private final ArrayDeque<Uri> last;
+        private final String base;
+        private final boolean proxy;
+        private final int prefetch;
+        private List<String> kept;
+        private List<String> held;
+        private boolean variant;
+        private boolean ended;
+        private boolean vod;
+        private boolean done;
+        private byte[] buffer;
+        private int position;
+
+        Rewriter(Response response, Map<String, String> params, Map<String, String> headers, int prefetch) {
+            this.response = response;
+            this.params = params;
+            this.headers = headers;
+            this.base = response.request().url().toString();
+            this.reader = new BufferedReader(new InputStreamReader(response.body().byteStream(), StandardCharsets.UTF_8));
+            this.proxy = "1".equals(params.get("proxy"));
+            this.prefetch = prefetch;
+            this.ads = getAds(params.get("ad"));
+            this.block = new ArrayList<>();
+            this.source = new ArrayList<>();
+            this.first = new ArrayList<>();
+            this.last = new ArrayDeque<>();
+            this.buffer = new byte[0];
+        }
+
+        private List<Pattern> getAds(String ad) {
+            List<String> items = new ArrayList<>(Sniffer.getRegex(UrlUtil.uri(base)));
+            if (ad != null && !ad.isEmpty()) items.add(ad);
+            List<Pattern> patterns = new ArrayList<>();
+            for (String item : items) {
+                try {
+                    patterns.add(Pattern.compile(item));
+                } catch (Exception ignored) {
+                    patterns.add(Pattern.compile(Pattern.quote(item)));
+                }
+            }
+            return patterns;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return buffer[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!fill()) return -1;
+            int count = Math.min(len, buffer.length - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+
+        private boolean fill() throws IOException {
+            while (position >= buffer.length) {
+                String line = reader.readLine();
+                if (line == null) return finish();
+                String text = process(line.trim());
+                buffer = text.getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return true;
+        }
+
+        private boolean finish() {
+            if (done) return false;
+            StringBuilder sb = new StringBuilder(flush(true, null));
+            if (held != null) for (int i = 0; i < held.size(); i++) sb.append(ended && kept.get(i) != null ? kept.get(i) : held.get(i));
+            held = null;
+            if (prefetch > 0) Preloader.get().prefetch(ended ? first : new ArrayList<>(last), headers);
+            done = true;
+            buffer = sb.toString().getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return buffer.length > 0;
+        }
+
+        private String process(String line) {
+            if (line.isEmpty()) return "";
+            if (line.startsWith("#EXT-X-DISCONTINUITY") && !line.startsWith("#EXT-X-DISCONTINUITY-")) {
+                String text = flush(true, line);
+                block.add(line);
+                source.add(line);
+                return text;
+            }
+            if (line.startsWith("#EXT-X-ENDLIST")) ended = true;
+            if (line.startsWith("#EXT-X-PLAYLIST-TYPE:VOD")) vod = true;
+            if (line.startsWith("#EXT-X-STREAM-INF")) variant = true;
+            String text = line.startsWith("#") ? tag(line) : uri(line);
+            if (block.isEmpty()) return hold(text + "\n", null);
+            block.add(text);
+            source.add(line);
+            return block.size() > BLOCK ? flush(false, null) : "";
+        }
+
+        private String tag(String line) {
+            Matcher matcher = URI.matcher(line);
+            if (!matcher.find()) return line;
+            String uri = UrlUtil.resolve(base, matcher.group(1));
+            boolean playlist = line.startsWith("#EXT-X-MEDIA") || line.startsWith("#EXT-X-I-FRAME-STREAM-INF");
+            return line.substring(0, matcher.start(1)) + (playlist ? playlist(uri) : uri) + line.substring(matcher.end(1));
+        }
+
+        private String uri(String line) {
+            String uri = UrlUtil.resolve(base, line);
+            if (variant) {
+                variant = false;
+                return playlist(uri);
+            }
+            if (first.size() < prefetch) first.add(Uri.parse(uri));
+            if (prefetch > 0) last.add(Uri.parse(uri));
+            if (last.size() > prefetch) last.poll();
+            return proxy ? link(SEGMENT, uri, "") : uri;
+        }
+
+        private String playlist(String uri) {
+            String extra = (params.containsKey("ad") ? "&ad=" + encode(params.get("ad")) : "") + (proxy ? "&proxy=1" : "") + (prefetch > 0 ? "&prefetch=" + prefetch : "");
+            return link(PATH, uri, extra);
+        }
+
+        private String link(String path, String uri, String extra) {
+            return Server.get().getAddress(path + "?url=" + encode(uri) + "&header=" + encode(Json.toObject(headers).toString()) + extra);
+        }
+
+        private String flush(boolean filter, String next) {
+            if (block.isEmpty()) return "";
+            StringBuilder sb = new StringBuilder();
+            StringBuilder raw = new StringBuilder();
+            StringBuilder keep = new StringBuilder();
+            for (int i = 0; i < block.size(); i++) {
+                sb.append(block.get(i)).append("\n");
+                raw.append(source.get(i)).append("\n");
+                if (isKept(source.get(i))) keep.append(block.get(i)).append("\n");
+            }
+            if (next != null) raw.append(next).append("\n");
+            block.clear();
+            source.clear();
+            boolean ad = false;
+            if (filter) for (Pattern pattern : ads) ad |= pattern.matcher(raw).find();
+            return hold(sb.toString(), ad ? keep.toString() : null);
+        }
+
+        private static boolean isKept(String line) {
+            return line.startsWith("#EXT-X-ENDLIST") || line.startsWith("#EXT-X-KEY") || line.startsWith("#EXT-X-MAP");
+        }
+
+        private String hold(String text, String keep) {
+            if (held == null && keep == null) return text;
+            if (held == null && vod) return keep;
+            if (held == null) {
+                held = new ArrayList<>();
+                kept = new ArrayList<>();
+            }
+            held.add(text);
+            kept.add(keep);
+            return "";
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package top.cywin.onetv.movie.server.process;
+
+import top.cywin.onetv.movie.catvod.net.OkMetrics;
+import top.cywin.onetv.movie.server.impl.Process;
+
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public class Metrics implements Process {
+
+    @Override
+    public boolean isRequest(NanoHTTPD.IHTTPSession session, String url) {
+        return url.startsWith("/metrics");
+    }
+
+    @Override
+    public NanoHTTPD.Response doResponse(NanoHTTPD.IHTTPSession session, String url, Map<String, String> files) {
+        if ("clear".equals(session.getParms().get("do"))) OkMetrics.get().clear();
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", OkMetrics.get().toJson().toString());
+    }
+}
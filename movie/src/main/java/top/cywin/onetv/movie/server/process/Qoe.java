@@ -0,0 +1,22 @@
+package top.cywin.onetv.movie.server.process;
+
+import top.cywin.onetv.movie.player.QoeMetrics;
+import top.cywin.onetv.movie.server.impl.Process;
+
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+
+public class Qoe implements Process {
+
+    @Override
+    public boolean isRequest(NanoHTTPD.IHTTPSession session, String url) {
+        return url.startsWith("/qoe");
+    }
+
+    @Override
+    public NanoHTTPD.Response doResponse(NanoHTTPD.IHTTPSession session, String url, Map<String, String> files) {
+        if ("clear".equals(session.getParms().get("do"))) QoeMetrics.get().clear();
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", QoeMetrics.get().toJson().toString());
+    }
+}
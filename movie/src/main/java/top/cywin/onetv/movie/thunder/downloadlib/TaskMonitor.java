@@ -0,0 +1,167 @@
+package top.cywin.onetv.movie.thunder.downloadlib;
+
+import top.cywin.onetv.movie.catvod.utils.Path;
+import top.cywin.onetv.movie.thunder.downloadlib.parameter.GetTaskId;
+import top.cywin.onetv.movie.thunder.downloadlib.parameter.XLTaskInfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The download library has no progress callbacks, so every watched task is sampled from one shared
+ * thread instead of a sleep loop per caller. The interval starts short and backs off while nothing
+ * changes; waiters are released as soon as their task is ready. Finished task folders stay under
+ * {@link Path#thunder()} until they exceed the quota, oldest first.
+ */
+public class TaskMonitor {
+
+    private static final long MIN = 50;
+    private static final long MAX = 800;
+
+    private final ScheduledExecutorService executor;
+    private final Map<Long, List<Watch>> watches;
+    private final Set<File> active;
+    private long interval;
+    private boolean scheduled;
+
+    private static class Loader {
+        static volatile TaskMonitor INSTANCE = new TaskMonitor();
+    }
+
+    public static TaskMonitor get() {
+        return Loader.INSTANCE;
+    }
+
+    private TaskMonitor() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "thunder-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watches = new ConcurrentHashMap<>();
+        active = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
+    public void track(GetTaskId taskId) {
+        active.add(taskId.getSavePath());
+    }
+
+    public void untrack(GetTaskId taskId) {
+        active.remove(taskId.getSavePath());
+    }
+
+    /**
+     * Blocks until the task fails, finishes, or is running with at least {@code head} bytes on disk.
+     * Returns the last sample when the timeout passes first so the caller can decide what to do.
+     */
+    public XLTaskInfo await(GetTaskId taskId, int index, long head, long timeout) throws InterruptedException {
+        Watch watch = new Watch(taskId, index, head);
+        watches.computeIfAbsent(taskId.getTaskId(), key -> new CopyOnWriteArrayList<>()).add(watch);
+        try {
+            watch.sample();
+            if (watch.latch.getCount() == 0) return watch.info;
+            schedule(MIN);
+            watch.latch.await(timeout, TimeUnit.MILLISECONDS);
+            return watch.info;
+        } finally {
+            watches.computeIfPresent(taskId.getTaskId(), (key, items) -> items.remove(watch) && items.isEmpty() ? null : items);
+        }
+    }
+
+    private synchronized void schedule(long delay) {
+        if (delay < interval || !scheduled) interval = delay;
+        if (scheduled) return;
+        scheduled = true;
+        executor.schedule(this::poll, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        boolean changed = false;
+        for (List<Watch> items : watches.values()) for (Watch watch : items) changed |= watch.sample();
+        synchronized (this) {
+            scheduled = false;
+            if (watches.isEmpty()) return;
+            interval = changed ? MIN : Math.min(interval * 2, MAX);
+        }
+        schedule(interval);
+    }
+
+    public void cleanup(long quota) {
+        executor.execute(() -> trim(quota));
+    }
+
+    private void trim(long quota) {
+        Map<File, long[]> dirs = new HashMap<>();
+        long total = 0;
+        for (File dir : Path.list(Path.thunder())) {
+            if (!dir.isDirectory() || active.contains(dir)) continue;
+            long[] item = new long[]{size(dir), Math.max(dir.lastModified(), newest(dir))};
+            dirs.put(dir, item);
+            total += item[0];
+        }
+        List<File> items = new ArrayList<>(dirs.keySet());
+        Collections.sort(items, (o1, o2) -> Long.compare(dirs.get(o1)[1], dirs.get(o2)[1]));
+        for (File dir : items) {
+            if (total <= quota) break;
+            total -= dirs.get(dir)[0];
+            Path.clear(dir);
+        }
+    }
+
+    private static long size(File file) {
+        if (file.isFile()) return file.length();
+        long size = 0;
+        for (File item : Path.list(file)) size += size(item);
+        return size;
+    }
+
+    private static long newest(File file) {
+        if (file.isFile()) return file.lastModified();
+        long time = 0;
+        for (File item : Path.list(file)) time = Math.max(time, newest(item));
+        return time;
+    }
+
+    static boolean isReady(XLTaskInfo info, long head) {
+        if (info.mTaskStatus == 2 || info.mTaskStatus == 3) return true;
+        if (info.mTaskStatus != 1) return false;
+        long target = info.mFileSize > 0 ? Math.min(head, info.mFileSize) : head;
+        return info.mDownloadSize >= target;
+    }
+
+    private static class Watch {
+
+        private final CountDownLatch latch;
+        private final GetTaskId taskId;
+        private final int index;
+        private final long head;
+        private volatile XLTaskInfo info;
+
+        Watch(GetTaskId taskId, int index, long head) {
+            this.latch = new CountDownLatch(1);
+            this.info = new XLTaskInfo();
+            this.taskId = taskId;
+            this.index = index;
+            this.head = head;
+        }
+
+        boolean sample() {
+            XLTaskInfo last = info;
+            XLTaskInfo next = index < 0 ? XLTaskHelper.get().getTaskInfo(taskId) : XLTaskHelper.get().getBtSubTaskInfo(taskId, index).mTaskInfo;
+            info = next;
+            if (isReady(next, head)) latch.countDown();
+            return next.mTaskStatus != last.mTaskStatus || next.mDownloadSize != last.mDownloadSize;
+        }
+    }
+}
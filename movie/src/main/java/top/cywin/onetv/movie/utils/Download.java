@@ -1,6 +1,7 @@
 package top.cywin.onetv.movie.utils;
 
 import top.cywin.onetv.movie.App;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 import top.cywin.onetv.movie.catvod.utils.Path;
 import com.google.common.net.HttpHeaders;
@@ -17,6 +18,7 @@ public class Download {
     private final File file;
     private final String url;
     private Callback callback;
+    private OkCache.Type type;
 
     public static Download create(String url, File file) {
         return create(url, file, null);
@@ -32,6 +34,11 @@ public class Download {
         this.callback = callback;
     }
 
+    public Download cache(OkCache.Type type) {
+        this.type = type;
+        return this;
+    }
+
     public void start() {
         if (url.startsWith("file")) return;
         if (callback == null) doInBackground();
@@ -45,7 +52,7 @@ public class Download {
     }
 
     private void doInBackground() {
-        try (Response res = OkHttp.newCall(url, url).execute()) {
+        try (Response res = OkHttp.newCall(type == null ? OkHttp.client() : OkHttp.client(type), url, url).execute()) {
             Path.create(file);
             download(res.body().byteStream(), Double.parseDouble(res.header(HttpHeaders.CONTENT_LENGTH, "1")));
             App.post(() -> {if (callback != null) callback.success(file);});
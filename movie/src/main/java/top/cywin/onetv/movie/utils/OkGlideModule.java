@@ -17,6 +17,7 @@ import com.bumptech.glide.integration.avif.AvifStreamBitmapDecoder;
 import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
 import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.module.AppGlideModule;
+import top.cywin.onetv.movie.catvod.net.OkCache;
 import top.cywin.onetv.movie.catvod.net.OkHttp;
 
 import java.io.InputStream;
@@ -35,7 +36,7 @@ public class OkGlideModule extends AppGlideModule {
     public void registerComponents(@NonNull Context context, @NonNull Glide glide, Registry registry) {
         AvifByteBufferBitmapDecoder byteBufferBitmapDecoder = new AvifByteBufferBitmapDecoder(glide.getBitmapPool());
         AvifStreamBitmapDecoder streamBitmapDecoder = new AvifStreamBitmapDecoder(registry.getImageHeaderParsers(), byteBufferBitmapDecoder, glide.getArrayPool());
-        registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(OkHttp.client()));
+        registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(OkHttp.client(OkCache.Type.IMAGE)));
         registry.append(ByteBuffer.class, Bitmap.class, byteBufferBitmapDecoder);
         registry.append(InputStream.class, Bitmap.class, streamBitmapDecoder);
     }
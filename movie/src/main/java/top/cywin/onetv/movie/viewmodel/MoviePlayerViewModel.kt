@@ -169,6 +169,17 @@ class MoviePlayerViewModel : ViewModel() {
         )
     }
 
+    /**
+     * 缓存的播放地址失效时重新解析当前剧集
+     */
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    fun onPlayerEvent(event: PlayerEvent) {
+        if (event.state != PlayerEvent.REFRESH) return
+        val episode = _uiState.value.currentEpisode ?: return
+        Log.d(TAG, "🔄 缓存播放地址失效，重新解析: ${episode.name}")
+        playEpisode(episode, _uiState.value.currentEpisodeIndex)
+    }
+
     /**
      * 监听错误事件
      */
@@ -357,6 +368,13 @@ class MoviePlayerViewModel : ViewModel() {
         val movie = currentState.movie
         val episode = currentState.currentEpisode
 
+        val nextEpisode = currentState.episodes.getOrNull(currentState.currentEpisodeIndex + 1)
+        val currentFlag = currentState.currentFlag
+        if (nextEpisode != null && currentFlag != null) {
+            val siteKey = movie?.siteKey?.takeIf { it.isNotEmpty() } ?: currentState.siteKey
+            repositoryAdapter.preloadPlayUrl(siteKey, nextEpisode.url, currentFlag.flag, position, duration)
+        }
+
         if (movie != null && episode != null) {
             repositoryAdapter.savePlayHistory(
                 movie.getVodId(),
@@ -0,0 +1,125 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+
+public class OkCookieStoreTest {
+
+    private static final HttpUrl URL = HttpUrl.get("https://www.example.com/path");
+
+    private ScheduledExecutorService executor;
+    private FakeBackend backend;
+    private OkCookieStore store;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        backend = new FakeBackend();
+        store = new OkCookieStore(backend, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void drain() throws Exception {
+        Thread.sleep(700);
+        executor.submit(() -> {
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    private static List<String> names(List<Cookie> cookies) {
+        List<String> names = new ArrayList<>();
+        for (Cookie cookie : cookies) names.add(cookie.name() + "=" + cookie.value());
+        return names;
+    }
+
+    @Test
+    public void pullsCookiesFromTheBackendOnFirstUse() {
+        backend.cookies.put("a", "1");
+        backend.cookies.put("b", "2");
+        assertEquals(Arrays.asList("a=1", "b=2"), sorted(names(store.load(URL))));
+    }
+
+    @Test
+    public void pushesWritesInOneBatch() throws Exception {
+        store.save(URL, "a=1; b=2");
+        assertEquals(Arrays.asList("a=1", "b=2"), sorted(names(store.load(URL))));
+        drain();
+        assertEquals("1", backend.cookies.get("a"));
+        assertEquals("2", backend.cookies.get("b"));
+        assertEquals(1, backend.flushes);
+    }
+
+    @Test
+    public void dropsCookiesTheBackendDeleted() throws Exception {
+        store.save(URL, "a=1; b=2");
+        drain();
+        backend.cookies.remove("b");
+        assertEquals(Arrays.asList("a=1"), names(store.load(URL)));
+    }
+
+    @Test
+    public void keepsQueuedWritesWhenPulling() {
+        store.save(URL, "a=1");
+        assertEquals(Arrays.asList("a=1"), names(store.load(URL)));
+    }
+
+    @Test
+    public void clearDiscardsQueuedWrites() throws Exception {
+        store.save(URL, "a=1");
+        store.clear();
+        drain();
+        assertNull(backend.cookies.get("a"));
+        assertTrue(store.load(URL).isEmpty());
+    }
+
+    private static List<String> sorted(List<String> items) {
+        items.sort(String::compareTo);
+        return items;
+    }
+
+    private static class FakeBackend implements OkCookieStore.Backend {
+
+        private final Map<String, String> cookies = new LinkedHashMap<>();
+        private int flushes;
+
+        @Override
+        public synchronized String get(String url) {
+            if (cookies.isEmpty()) return null;
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> entry : cookies.entrySet()) sb.append(sb.length() == 0 ? "" : "; ").append(entry.getKey()).append("=").append(entry.getValue());
+            return sb.toString();
+        }
+
+        @Override
+        public synchronized void set(String url, String cookie) {
+            String pair = cookie.split(";")[0].trim();
+            int index = pair.indexOf('=');
+            if (index > 0) cookies.put(pair.substring(0, index), pair.substring(index + 1));
+        }
+
+        @Override
+        public synchronized void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class OkHostsTest {
+
+    @Test
+    public void matchesExactSuffixAndWildcardRules() {
+        OkHosts hosts = new OkHosts();
+        hosts.add("api.example.com", "1.1.1.1");
+        hosts.add("example.org", "2.2.2.2");
+        hosts.add("*.cdn.net", "3.3.3.3");
+        assertEquals("1.1.1.1", hosts.find("api.example.com"));
+        assertEquals("2.2.2.2", hosts.find("www.example.org"));
+        assertEquals("3.3.3.3", hosts.find("a.b.cdn.net"));
+        assertNull(hosts.find("cdn.net"));
+        assertNull(hosts.find("example.com"));
+    }
+
+    @Test
+    public void matchesInnerLabelRuns() {
+        OkHosts hosts = new OkHosts();
+        hosts.add("video.cdn", "1.1.1.1");
+        assertEquals("1.1.1.1", hosts.find("video.cdn.example.com"));
+        assertEquals("1.1.1.1", hosts.find("edge.video.cdn.example.com"));
+    }
+
+    @Test
+    public void keepsPartialLabelRules() {
+        OkHosts hosts = new OkHosts();
+        hosts.add("cdn", "1.1.1.1");
+        assertEquals("1.1.1.1", hosts.find("img-cdn3.example.com"));
+        assertEquals("1.1.1.1", hosts.find("img-cdn3.example.com"));
+        assertNull(hosts.find("example.com"));
+    }
+
+    @Test
+    public void fallsBackToRegexRules() {
+        OkHosts hosts = new OkHosts();
+        hosts.add("edge[0-9]+\\.example\\.com", "1.1.1.1");
+        assertEquals("1.1.1.1", hosts.find("edge12.example.com"));
+        assertNull(hosts.find("edge.example.com"));
+    }
+
+    @Test
+    public void missesStayCheapWithManyRules() {
+        OkHosts hosts = new OkHosts();
+        for (int i = 0; i < 500; i++) hosts.add("host" + i + ".example" + i + ".com", "10.0.0." + (i % 250));
+        for (int i = 0; i < 500; i++) hosts.add("*.wild" + i + ".net", "10.0.1." + (i % 250));
+        assertEquals("10.0.0.42", hosts.find("host42.example42.com"));
+        assertEquals("10.0.1.7", hosts.find("a.wild7.net"));
+        String[] misses = new String[100];
+        for (int i = 0; i < misses.length; i++) misses[i] = "www.site" + i + ".org";
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) assertNull(hosts.find(misses[i % misses.length]));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+}
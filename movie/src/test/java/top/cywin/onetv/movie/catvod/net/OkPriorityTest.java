@@ -0,0 +1,122 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+public class OkPriorityTest {
+
+    private final OkHttpClient client = new OkHttpClient();
+    private final List<Call> calls = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    @After
+    public void tearDown() throws InterruptedException {
+        OkPriority.get().setBuffering(false);
+        for (Call call : calls) call.cancel();
+        for (Thread thread : threads) thread.join();
+        for (Call call : calls) OkPriority.get().release(call);
+    }
+
+    private Call call() {
+        Call call = client.newCall(new Request.Builder().url("http://127.0.0.1/").build());
+        calls.add(call);
+        return call;
+    }
+
+    private void fill(OkPriority.Level level) throws IOException {
+        int max = OkPriority.get().dispatcher(level).getMaxRequests();
+        for (int i = 0; i < max; i++) assertTrue(OkPriority.get().acquire(level, call()));
+    }
+
+    private Thread acquire(OkPriority.Level level, Call call, CountDownLatch done, AtomicReference<Object> result) {
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(OkPriority.get().acquire(level, call));
+            } catch (IOException e) {
+                result.set(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        thread.start();
+        threads.add(thread);
+        return thread;
+    }
+
+    @Test
+    public void levelsUseTheirOwnDispatcher() {
+        assertNotSame(OkPriority.get().dispatcher(OkPriority.Level.PLAYBACK), OkPriority.get().dispatcher(OkPriority.Level.PREFETCH));
+        assertEquals(8, OkPriority.get().dispatcher(OkPriority.Level.PREFETCH).getMaxRequests());
+        assertEquals(4, OkPriority.get().dispatcher(OkPriority.Level.PREFETCH).getMaxRequestsPerHost());
+    }
+
+    @Test(timeout = 5000)
+    public void playbackStartsWhileOtherLevelsAreSaturated() throws Exception {
+        fill(OkPriority.Level.BACKGROUND);
+        fill(OkPriority.Level.PREFETCH);
+        CountDownLatch queued = new CountDownLatch(1);
+        acquire(OkPriority.Level.PREFETCH, call(), queued, new AtomicReference<>());
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        assertTrue(OkPriority.get().acquire(OkPriority.Level.PLAYBACK, call()));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+    }
+
+    @Test(timeout = 5000)
+    public void releaseHandsThePermitToTheNextCall() throws Exception {
+        fill(OkPriority.Level.BACKGROUND);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        acquire(OkPriority.Level.BACKGROUND, call(), done, result);
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        OkPriority.get().release(calls.get(0));
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(true, result.get());
+    }
+
+    @Test(timeout = 5000)
+    public void canceledCallStopsWaiting() throws Exception {
+        fill(OkPriority.Level.BACKGROUND);
+        Call call = call();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        acquire(OkPriority.Level.BACKGROUND, call, done, result);
+        call.cancel();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(result.get() instanceof IOException);
+    }
+
+    @Test(timeout = 10000)
+    public void leakedPermitsOnlyDelayTheLevel() throws Exception {
+        fill(OkPriority.Level.BACKGROUND);
+        assertFalse(OkPriority.get().acquire(OkPriority.Level.BACKGROUND, call()));
+    }
+
+    @Test(timeout = 5000)
+    public void prefetchWaitsUntilBufferingEnds() throws Exception {
+        OkPriority.get().setBuffering(true);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Object> result = new AtomicReference<>();
+        acquire(OkPriority.Level.PREFETCH, call(), done, result);
+        assertFalse(done.await(300, TimeUnit.MILLISECONDS));
+        OkPriority.get().setBuffering(false);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(true, result.get());
+    }
+}
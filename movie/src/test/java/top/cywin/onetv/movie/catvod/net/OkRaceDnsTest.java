@@ -0,0 +1,123 @@
+package top.cywin.onetv.movie.catvod.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+public class OkRaceDnsTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static InetAddress ip(String address) throws UnknownHostException {
+        return InetAddress.getByName(address);
+    }
+
+    private static Dns answer(long delay, InetAddress... addresses) {
+        return hostname -> {
+            sleep(delay);
+            return Arrays.asList(addresses);
+        };
+    }
+
+    private static Dns failure(long delay) {
+        return hostname -> {
+            sleep(delay);
+            throw new UnknownHostException(hostname);
+        };
+    }
+
+    private static void sleep(long delay) throws UnknownHostException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            throw new UnknownHostException("interrupted");
+        }
+    }
+
+    @Test
+    public void fastestResolverWins() throws Exception {
+        OkRaceDns dns = new OkRaceDns(executor, 2000, answer(500, ip("10.0.0.1")), answer(0, ip("10.0.0.2")));
+        long start = System.nanoTime();
+        assertEquals(Collections.singletonList(ip("10.0.0.2")), dns.lookup("example.com"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 400);
+    }
+
+    @Test
+    public void fallsBackWhenOneResolverFails() throws Exception {
+        OkRaceDns dns = new OkRaceDns(executor, 2000, failure(0), answer(100, ip("10.0.0.3")));
+        assertEquals(Collections.singletonList(ip("10.0.0.3")), dns.lookup("example.com"));
+    }
+
+    @Test
+    public void skipsEmptyAnswers() throws Exception {
+        OkRaceDns dns = new OkRaceDns(executor, 2000, answer(0), answer(100, ip("10.0.0.4")));
+        assertEquals(Collections.singletonList(ip("10.0.0.4")), dns.lookup("example.com"));
+    }
+
+    @Test
+    public void failsWhenEveryResolverFails() {
+        OkRaceDns dns = new OkRaceDns(executor, 2000, failure(0), failure(50));
+        try {
+            dns.lookup("example.com");
+            fail();
+        } catch (UnknownHostException e) {
+            assertFalse(OkRaceDns.isTimeout(e));
+        }
+    }
+
+    @Test
+    public void reportsTimeouts() {
+        OkRaceDns dns = new OkRaceDns(executor, 100, answer(1000, ip4()), answer(1000, ip4()));
+        try {
+            dns.lookup("example.com");
+            fail();
+        } catch (UnknownHostException e) {
+            assertTrue(OkRaceDns.isTimeout(e));
+        }
+    }
+
+    @Test
+    public void interleavesFamiliesStartingWithTheLastConnected() throws Exception {
+        InetAddress v4a = ip("10.0.0.1");
+        InetAddress v4b = ip("10.0.0.2");
+        InetAddress v6a = ip("2001:db8::1");
+        InetAddress v6b = ip("2001:db8::2");
+        OkRaceDns dns = new OkRaceDns(executor, 2000, answer(0, v4a, v4b, v6a, v6b));
+        assertEquals(Arrays.asList(v4a, v6a, v4b, v6b), dns.lookup("example.com"));
+        dns.onConnected(v6a);
+        assertTrue(dns.isPreferIpv6());
+        assertEquals(Arrays.asList(v6a, v4a, v6b, v4b), dns.lookup("example.com"));
+        dns.onConnectFailed(v6a);
+        assertFalse(dns.isPreferIpv6());
+        List<InetAddress> single = dns.sort(Arrays.asList(v6a, v6b));
+        assertEquals(Arrays.asList(v6a, v6b), single);
+    }
+
+    private static InetAddress ip4() {
+        try {
+            return ip("10.0.0.9");
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package top.cywin.onetv.movie.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import top.cywin.onetv.movie.exception.ExtractException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class P2pManagerTest {
+
+    @Test
+    public void matchesForceSchemes() {
+        assertTrue(P2pManager.isForce("p2p"));
+        assertTrue(P2pManager.isForce("P5P"));
+        assertTrue(P2pManager.isForce("mitv"));
+        assertFalse(P2pManager.isForce("tvbus"));
+        assertFalse(P2pManager.isForce("http"));
+    }
+
+    @Test
+    public void returnsTheCompletedValue() throws Exception {
+        assertEquals("core", P2pManager.await(CompletableFuture.completedFuture("core")));
+    }
+
+    @Test
+    public void rethrowsTheStartupFailure() {
+        IOException error = new IOException("bind");
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        try {
+            P2pManager.await(future);
+            fail();
+        } catch (Exception e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void stopsWaitingAtTheSchedulerDeadline() throws Exception {
+        Scheduler.Batch<Exception> batch = Scheduler.get().batch(200);
+        Future<Exception> future = batch.submit(() -> {
+            try {
+                P2pManager.await(new CompletableFuture<Void>());
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        long start = System.nanoTime();
+        Exception error = future.get();
+        assertTrue(error instanceof ExtractException);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+}
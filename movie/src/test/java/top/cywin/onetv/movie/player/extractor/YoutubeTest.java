@@ -0,0 +1,38 @@
+package top.cywin.onetv.movie.player.extractor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class YoutubeTest {
+
+    private static final long EXPIRE = 1_800_000_000L;
+    private static final long MARGIN = 60_000;
+
+    @Test
+    public void readsTheExpireQueryParameter() {
+        assertEquals(EXPIRE * 1000 - MARGIN, Youtube.getExpire("https://rr1.googlevideo.com/videoplayback?expire=" + EXPIRE + "&ei=abc"));
+        assertEquals(EXPIRE * 1000 - MARGIN, Youtube.getExpire("https://rr1.googlevideo.com/videoplayback?ei=abc&expire=" + EXPIRE));
+    }
+
+    @Test
+    public void readsTheExpirePathSegment() {
+        assertEquals(EXPIRE * 1000 - MARGIN, Youtube.getExpire("https://manifest.googlevideo.com/api/manifest/hls_variant/expire/" + EXPIRE + "/ei/abc/index.m3u8"));
+    }
+
+    @Test
+    public void ignoresUrlsWithoutExpiry() {
+        assertEquals(0, Youtube.getExpire("https://rr1.googlevideo.com/videoplayback?ei=abc"));
+        assertEquals(0, Youtube.getExpire("https://rr1.googlevideo.com/videoplayback?noexpire=" + EXPIRE));
+        assertEquals(0, Youtube.getExpire(""));
+    }
+
+    @Test
+    public void liveEntriesExpireWithTheirUrl() {
+        String url = "https://manifest.googlevideo.com/api/manifest/hls_variant/expire/" + EXPIRE + "/index.m3u8";
+        Youtube.Entry entry = new Youtube.Entry(url);
+        assertEquals(EXPIRE * 1000 - MARGIN, entry.expire);
+        assertEquals(url, entry.get());
+        assertEquals(0, new Youtube.Entry("").expire);
+    }
+}
@@ -0,0 +1,45 @@
+package top.cywin.onetv.movie.thunder.downloadlib;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import top.cywin.onetv.movie.thunder.downloadlib.parameter.XLTaskInfo;
+
+public class TaskMonitorTest {
+
+    private static final long HEAD = 4 * 1024 * 1024;
+
+    private static XLTaskInfo info(int status, long download, long size) {
+        XLTaskInfo info = new XLTaskInfo();
+        info.mTaskStatus = status;
+        info.mDownloadSize = download;
+        info.mFileSize = size;
+        return info;
+    }
+
+    @Test
+    public void finishedAndFailedTasksAreReady() {
+        assertTrue(TaskMonitor.isReady(info(2, 0, 0), HEAD));
+        assertTrue(TaskMonitor.isReady(info(3, 0, 0), HEAD));
+    }
+
+    @Test
+    public void pendingTasksAreNotReady() {
+        assertFalse(TaskMonitor.isReady(info(0, HEAD, HEAD), HEAD));
+    }
+
+    @Test
+    public void runningTasksWaitForTheHead() {
+        assertFalse(TaskMonitor.isReady(info(1, HEAD - 1, 0), HEAD));
+        assertTrue(TaskMonitor.isReady(info(1, HEAD, 0), HEAD));
+        assertFalse(TaskMonitor.isReady(info(1, HEAD - 1, HEAD * 10), HEAD));
+    }
+
+    @Test
+    public void smallFilesOnlyNeedTheirSize() {
+        assertFalse(TaskMonitor.isReady(info(1, 999, 1000), HEAD));
+        assertTrue(TaskMonitor.isReady(info(1, 1000, 1000), HEAD));
+    }
+}